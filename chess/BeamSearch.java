@@ -0,0 +1,285 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.common.solver.SolverPhaseEvent;
+
+import java.util.Arrays;
+
+/**
+ * searches a chess puzzle a layer at a time, keeping only the most
+ * promising positions of each layer. every capture removes a piece, so the
+ * positions after k captures form layer k and a solution is always
+ * {@code pieces - 1} layers down. the positions of a layer are ranked by
+ * the captures they have available, and the best {@link #getWidth()} of
+ * them that {@link SolvabilityCheck} cannot rule out are kept for the next
+ * layer. memory is the width times the number of layers, whatever the size
+ * of the puzzle.
+ *
+ * a beam that never had to leave a position out has searched the whole
+ * puzzle, so finding nothing means there is no solution. otherwise the
+ * answer is undetermined: the positions left out may have led to one.
+ *
+ * @author Kristin Yap
+ */
+public class BeamSearch {
+    /** positions kept in each layer unless another width is given */
+    public static final int DEFAULT_WIDTH = 100_000;
+    /** system property with the width used when the solver falls back to a beam */
+    public static final String WIDTH_PROPERTY = "chess.beam.width";
+    /** the name of this engine in flight recorder events */
+    private static final String ENGINE = "beam";
+
+    /** the starting position */
+    private final ChessBoard start;
+    /** positions kept in each layer */
+    private final int width;
+    /** positions whose captures were generated */
+    private long expanded;
+    /** positions generated */
+    private long nodes;
+    /** positions kept in the layers */
+    private long kept;
+    /** were positions left out of a layer for want of room? */
+    private boolean dropped;
+    /** the solution found, or null */
+    private MoveList solution;
+
+    /**
+     * creates a search
+     *
+     * @param start the starting config
+     * @param width positions kept in each layer, at least 1
+     */
+    public BeamSearch(ChessConfig start, int width) {
+        this(new ChessBoard(start), width);
+    }
+
+    /**
+     * creates a search from a board, which is left as it is
+     *
+     * @param start the starting position
+     * @param width positions kept in each layer, at least 1
+     */
+    public BeamSearch(ChessBoard start, int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Beam width must be at least 1: " + width);
+        }
+        this.start = start;
+        this.width = width;
+    }
+
+    /**
+     * the width of the beam the solver falls back to, from the
+     * {@value #WIDTH_PROPERTY} system property or {@link #DEFAULT_WIDTH}
+     *
+     * @return the width
+     */
+    public static int fallbackWidth() {
+        return Integer.getInteger(WIDTH_PROPERTY, DEFAULT_WIDTH);
+    }
+
+    /**
+     * searches for a solution
+     *
+     * @return the captures of a solution, or null if none was found
+     */
+    public MoveList solve() {
+        boolean timed = new SolverPhaseEvent().isEnabled();
+        long begin = timed ? System.nanoTime() : 0;
+        MoveList moves = searchLayers();
+        if (timed) {
+            SolverPhaseEvent.commit(ENGINE, "search", System.nanoTime() - begin, expanded, nodes, kept,
+                    start.getRows(), start.getCols(), start.getPieceCount());
+        }
+        return moves;
+    }
+
+    /**
+     * keeps the best positions of each layer until a capture leaves one piece
+     *
+     * @return the captures of a solution, or null if none was found
+     */
+    private MoveList searchLayers() {
+        expanded = 0;
+        nodes = 0;
+        kept = 0;
+        dropped = false;
+        solution = null;
+        int pieces = start.getPieceCount();
+        if (pieces <= 1) {
+            if (pieces == 1) {
+                solution = MoveList.of(start.getRows(), start.getCols(), new int[0], 0);
+            }
+            return solution;
+        }
+        // the surviving positions of each layer, with the capture that made them and where from
+        int[][] parents = new int[pieces - 1][];
+        int[][] captures = new int[pieces - 1][];
+        ChessBoard[] beam = {start};
+        int[] buffer = new int[ChessBoard.maxMoves(pieces)];
+        int[] scratch = new int[ChessBoard.maxMoves(pieces)];
+        for (int layer = 0; layer < pieces - 1 && beam.length > 0; layer++) {
+            Layer next = new Layer(Math.min(width, 1024));
+            PositionSet seen = new PositionSet(start);
+            for (int parent = 0; parent < beam.length; parent++) {
+                ChessBoard board = beam[parent];
+                expanded++;
+                int count = board.generateMoves(buffer);
+                for (int i = 0; i < count; i++) {
+                    int move = buffer[i];
+                    board.makeMove(move);
+                    nodes++;
+                    if (board.getPieceCount() == 1) {
+                        board.unmakeMove(move);
+                        solution = path(parents, captures, layer, parent, move);
+                        return solution;
+                    }
+                    // a position whose key collides with a kept one is kept as well
+                    if (!seen.contains(board)) {
+                        seen.add(board);
+                        next.add(parent, move, board.generateMoves(scratch));
+                    }
+                    board.unmakeMove(move);
+                }
+            }
+            beam = next.keep(beam, layer, parents, captures);
+            kept += beam.length;
+        }
+        return null;
+    }
+
+    /**
+     * rebuilds the captures that lead to a position
+     *
+     * @param parents where each kept position came from, by layer
+     * @param captures the capture that made each kept position, by layer
+     * @param layer the layer of the last capture
+     * @param parent the position in the layer before that the last capture was made from
+     * @param move the last capture
+     * @return the captures from the start
+     */
+    private MoveList path(int[][] parents, int[][] captures, int layer, int parent, int move) {
+        int[] line = new int[layer + 1];
+        line[layer] = move;
+        for (int d = layer - 1; d >= 0; d--) {
+            line[d] = captures[d][parent];
+            parent = parents[d][parent];
+        }
+        return MoveList.of(start.getRows(), start.getCols(), line, line.length);
+    }
+
+    /** the positions reached from one layer, before the best are picked */
+    private final class Layer {
+        /** where each position came from */
+        private int[] parents;
+        /** the capture that made each position */
+        private int[] moves;
+        /** the captures available from each position */
+        private int[] mobility;
+        /** the number of positions */
+        private int size;
+
+        /**
+         * creates an empty layer
+         *
+         * @param capacity positions to make room for
+         */
+        Layer(int capacity) {
+            parents = new int[capacity];
+            moves = new int[capacity];
+            mobility = new int[capacity];
+        }
+
+        /**
+         * adds a position
+         *
+         * @param parent where it came from
+         * @param move the capture that made it
+         * @param captures the captures available from it
+         */
+        void add(int parent, int move, int captures) {
+            if (size == parents.length) {
+                int grown = size * 2;
+                parents = Arrays.copyOf(parents, grown);
+                moves = Arrays.copyOf(moves, grown);
+                mobility = Arrays.copyOf(mobility, grown);
+            }
+            parents[size] = parent;
+            moves[size] = move;
+            mobility[size] = captures;
+            size++;
+        }
+
+        /**
+         * picks the positions to keep, the most mobile first, and plays them
+         *
+         * @param beam the positions of the layer before
+         * @param layer the layer being kept
+         * @param keptParents filled in with where each kept position came from
+         * @param keptMoves filled in with the capture that made each kept position
+         * @return the kept positions
+         */
+        ChessBoard[] keep(ChessBoard[] beam, int layer, int[][] keptParents, int[][] keptMoves) {
+            // sort by falling mobility, then by the order the positions were reached
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) (Integer.MAX_VALUE - mobility[i]) << 32 | i;
+            }
+            Arrays.sort(order);
+            ChessBoard[] kept = new ChessBoard[Math.min(size, width)];
+            int[] from = new int[kept.length];
+            int[] made = new int[kept.length];
+            int count = 0;
+            for (int rank = 0; rank < size; rank++) {
+                int i = (int) order[rank];
+                if (mobility[i] == 0) {
+                    // stuck with pieces left, sorted last
+                    break;
+                }
+                ChessBoard board = new ChessBoard(beam[parents[i]]);
+                board.makeMove(moves[i]);
+                if (SolvabilityCheck.reason(board) != null) {
+                    continue;
+                }
+                if (count == kept.length) {
+                    dropped = true;
+                    break;
+                }
+                kept[count] = board;
+                from[count] = parents[i];
+                made[count] = moves[i];
+                count++;
+            }
+            keptParents[layer] = Arrays.copyOf(from, count);
+            keptMoves[layer] = Arrays.copyOf(made, count);
+            return Arrays.copyOf(kept, count);
+        }
+    }
+
+    /**
+     * is the answer certain? it is when a solution was found, or when no
+     * position was ever left out and so the whole puzzle was searched
+     *
+     * @return false if positions left out of the beam may have led to a solution
+     */
+    public boolean isDetermined() {
+        return solution != null || !dropped;
+    }
+
+    /** returns the positions kept in each layer */
+    public int getWidth() {
+        return width;
+    }
+
+    /** returns the positions generated by the last search */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** returns the positions the last search kept in its layers */
+    public long getKept() {
+        return kept;
+    }
+}
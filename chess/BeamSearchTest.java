@@ -0,0 +1,101 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.MoveList;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * checks of {@link BeamSearch}. run it with
+ * {@code java puzzles.chess.solver.BeamSearchTest}; the first failed check
+ * throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class BeamSearchTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     * @throws IOException if a puzzle file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        wideBeamsAreExact();
+        narrowBeamsOnlyClaimNoSolutionWhenCertain();
+        System.out.println("BeamSearchTest: ok");
+    }
+
+    /**
+     * a beam wide enough never to leave a position out finds a solution
+     * exactly when there is one, and its answer is determined
+     *
+     * @throws IOException if a puzzle file cannot be written
+     */
+    private static void wideBeamsAreExact() throws IOException {
+        Random random = new Random(49);
+        for (int trial = 0; trial < 300; trial++) {
+            ChessBoard board = SolutionCounterTest.randomBoard(random, 3 + random.nextInt(2), 3 + random.nextInt(2),
+                    2 + random.nextInt(6));
+            BeamSearch search = new BeamSearch(board, 1_000_000);
+            MoveList moves = search.solve();
+            check(search.isDetermined(), "wide beam undetermined on " + board.encode());
+            check((moves != null) == solvable(board), "wide beam wrong on " + board.encode());
+            if (moves != null) {
+                check(moves.size() == board.getPieceCount() - 1, "wrong length on " + board.encode());
+                check(SolutionCounterTest.isSolution(SolutionCounterTest.config(board), moves),
+                        "not a solution on " + board.encode() + ": " + moves);
+            }
+        }
+    }
+
+    /**
+     * a beam of a few positions that finds nothing says there is no
+     * solution only when it left nothing out, which is then true; when it
+     * did leave positions out the answer is undetermined, and both cases
+     * happen
+     */
+    private static void narrowBeamsOnlyClaimNoSolutionWhenCertain() {
+        Random random = new Random(50);
+        int certain = 0;
+        int undetermined = 0;
+        for (int trial = 0; trial < 2000; trial++) {
+            ChessBoard board = SolutionCounterTest.randomBoard(random, 3 + random.nextInt(3), 3 + random.nextInt(3),
+                    4 + random.nextInt(5));
+            BeamSearch search = new BeamSearch(board, 1 + random.nextInt(3));
+            if (search.solve() != null) {
+                check(search.isDetermined(), "solution found but undetermined on " + board.encode());
+            }
+            else if (search.isDetermined()) {
+                check(!solvable(board), "claimed no solution on " + board.encode());
+                certain++;
+            }
+            else {
+                undetermined++;
+            }
+        }
+        check(certain > 0 && undetermined > 0, "certain " + certain + ", undetermined " + undetermined);
+    }
+
+    /**
+     * can a board be solved? the board is left as it is
+     *
+     * @param board the board
+     * @return true if it has a solution
+     */
+    private static boolean solvable(ChessBoard board) {
+        return new SolutionIterator(new ChessBoard(board)).hasNext();
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
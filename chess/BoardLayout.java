@@ -0,0 +1,173 @@
+package puzzles.chess.model;
+
+/**
+ * how the squares of a board are packed into bits. every square holds a
+ * small piece code, zero for empty, spread over a few bit planes. each plane
+ * is a bitset over the squares in row-major order, taking as many longs as
+ * the board needs: one up to 8x8, two up to 10x10 or 11x11, three up to 12x12.
+ * a board is a single long array holding its planes one after the other.
+ *
+ * @author Kristin Yap
+ */
+public final class BoardLayout {
+    /** an empty square */
+    private static final char EMPTY = '.';
+
+    /** board rows */
+    private final int rows;
+    /** board cols */
+    private final int cols;
+    /** longs in each plane */
+    private final int words;
+    /** bit planes, enough to hold the largest piece code */
+    private final int planes;
+    /** the piece of each code, code i is the piece at i - 1 */
+    private final String pieces;
+
+    /**
+     * creates the layout for a board
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param pieces every piece that can appear on the board, each once
+     */
+    public BoardLayout(int rows, int cols, String pieces) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = Math.max(1, (rows * cols + Long.SIZE - 1) / Long.SIZE);
+        this.planes = Math.max(1, 32 - Integer.numberOfLeadingZeros(pieces.length()));
+        this.pieces = pieces;
+    }
+
+    /** returns a board with every square empty */
+    public long[] newBits() {
+        return new long[words * planes];
+    }
+
+    /**
+     * gets the piece code on a square
+     *
+     * @param bits the board
+     * @param square the square in row-major order
+     * @return the code, zero for an empty square
+     */
+    private int codeAt(long[] bits, int square) {
+        int word = square >>> 6;
+        int code = 0;
+        for (int plane = 0; plane < planes; plane++) {
+            code |= (int) ((bits[plane * words + word] >>> square) & 1L) << plane;
+        }
+        return code;
+    }
+
+    /**
+     * gets the piece on a square
+     *
+     * @param bits the board
+     * @param square the square in row-major order
+     * @return the piece, or '.' for an empty square
+     */
+    public char get(long[] bits, int square) {
+        int code = codeAt(bits, square);
+        return code == 0 ? EMPTY : pieces.charAt(code - 1);
+    }
+
+    /**
+     * puts a piece on a square
+     *
+     * @param bits the board
+     * @param square the square in row-major order
+     * @param piece the piece, or '.' to empty the square
+     * @throws IllegalArgumentException if the piece is not part of this layout
+     */
+    public void set(long[] bits, int square, char piece) {
+        int code = piece == EMPTY ? 0 : pieces.indexOf(piece) + 1;
+        if (code < 0 || (piece != EMPTY && code == 0)) {
+            throw new IllegalArgumentException("Unknown piece: " + piece);
+        }
+        int word = square >>> 6;
+        long bit = 1L << square;
+        for (int plane = 0; plane < planes; plane++) {
+            int index = plane * words + word;
+            bits[index] = ((code >>> plane) & 1) == 0 ? bits[index] & ~bit : bits[index] | bit;
+        }
+    }
+
+    /**
+     * is there a piece on a square?
+     *
+     * @param bits the board
+     * @param square the square in row-major order
+     * @return true if the square is occupied
+     */
+    public boolean isOccupied(long[] bits, int square) {
+        int word = square >>> 6;
+        long bit = 1L << square;
+        for (int plane = 0; plane < planes; plane++) {
+            if ((bits[plane * words + word] & bit) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * counts the pieces on a board
+     *
+     * @param bits the board
+     * @return the number of occupied squares
+     */
+    public int count(long[] bits) {
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            long occupied = 0;
+            for (int plane = 0; plane < planes; plane++) {
+                occupied |= bits[plane * words + word];
+            }
+            count += Long.bitCount(occupied);
+        }
+        return count;
+    }
+
+    /**
+     * would a capture turn one board into another? the result is worked out
+     * a word at a time, without building it
+     *
+     * @param before the board before the capture
+     * @param from square of the moving piece
+     * @param to square of the captured piece
+     * @param after the board to compare with
+     * @return true if the capture on before gives after
+     */
+    public boolean equalsAfterCapture(long[] before, int from, int to, long[] after) {
+        int code = codeAt(before, from);
+        int fromWord = from >>> 6;
+        int toWord = to >>> 6;
+        for (int plane = 0; plane < planes; plane++) {
+            for (int word = 0; word < words; word++) {
+                int index = plane * words + word;
+                long expected = before[index];
+                if (word == fromWord) {
+                    expected &= ~(1L << from);
+                }
+                if (word == toWord) {
+                    expected = (expected & ~(1L << to)) | ((long) ((code >>> plane) & 1) << to);
+                }
+                if (expected != after[index]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** returns board rows */
+    public int getRows() {
+        return rows;
+    }
+
+    /** returns board cols */
+    public int getCols() {
+        return cols;
+    }
+}
@@ -1,11 +1,17 @@
 package puzzles.chess.solver;
 
 import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.chess.model.SolveCache;
 import puzzles.common.solver.Configuration;
-import puzzles.common.solver.Solver;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * main program for chess
@@ -14,18 +20,176 @@ import java.util.Collection;
  */
 public class Chess {
     /**
-     * solves for a chess puzzle
+     * solves for a chess puzzle with the strategy picked for it, or looks up
+     * the result of an earlier solve by the same strategy. puzzles the
+     * {@link SolvabilityCheck} rules out are not searched
      *
      * @param start starting board
      */
     public static void solveChess(ChessConfig start){
+        if(!provedUnsolvable(start)){
+            solveChess(start, StrategySelector.select(start).strategy());
+        }
+    }
+
+    /**
+     * solves for a chess puzzle, or looks up the result of an earlier solve
+     * by the same strategy when a cache file is named by the
+     * {@value SolveCache#FILE_PROPERTY} system property. puzzles the
+     * {@link SolvabilityCheck} rules out are not searched
+     *
+     * @param start starting board
+     * @param strategy solves the puzzle if it has not been solved before
+     */
+    public static void solveChess(ChessConfig start, SolveStrategy strategy){
+        if(provedUnsolvable(start)){
+            return;
+        }
         int totalConfigs = 1; // counts initial config
         int uniqueConfigs = 0;
-        Collection<Configuration> path = Solver.getShortestPath(start);
-        totalConfigs += Solver.getTotalConfigs();
-        uniqueConfigs += Solver.getUniqueConfigs();
+        SolveCache.Result result = SolveCache.solve(start, strategy.name(), strategy::solve);
+        Collection<Configuration> path = result.solvable() ? result.moves().replay(start) : new ArrayList<>();
+        totalConfigs += result.totalConfigs();
+        uniqueConfigs += result.uniqueConfigs();
         System.out.println("Total Configs: " + totalConfigs);
         System.out.println("Unique Configs: " + uniqueConfigs);
+        if(!result.determined()){
+            System.out.println("Undetermined: no solution found within the memory limit");
+            return;
+        }
+        printPath(path);
+    }
+
+    /**
+     * prints why a puzzle can never be solved, if that can be shown without
+     * searching it
+     *
+     * @param start starting board
+     * @return true if the puzzle is unsolvable
+     */
+    private static boolean provedUnsolvable(ChessConfig start){
+        String reason = SolvabilityCheck.reason(start);
+        if(reason == null){
+            return false;
+        }
+        System.out.println("Unsolvable: " + reason);
+        printPath(new ArrayList<>());
+        return true;
+    }
+
+    /**
+     * solves for a chess puzzle with the depth first search
+     *
+     * @param start starting board
+     * @param ordering the order captures are tried in
+     * @param nogoods dead positions from earlier runs, or null
+     */
+    public static void solveChessDepthFirst(ChessConfig start, MoveOrdering ordering, NogoodStore nogoods){
+        ChessSearch search = new ChessSearch(start, ordering);
+        search.useNogoods(nogoods);
+        Collection<Configuration> path = search.solve();
+        System.out.println("Searched Configs: " + search.getNodes());
+        System.out.println("Dead Configs: " + search.getDeadPositions());
+        if(nogoods != null){
+            long lookups = nogoods.getLookups();
+            System.out.printf("Nogood Hits: %d/%d (%.1f%%), %d stored%n", nogoods.getHits(), lookups,
+                    lookups == 0 ? 0.0 : 100.0 * nogoods.getHits() / lookups, nogoods.size());
+        }
+        printPath(path);
+    }
+
+    /**
+     * solves for a chess puzzle with the parallel depth first search
+     *
+     * @param start starting board
+     */
+    public static void solveChessParallel(ChessConfig start){
+        ParallelChessSearch search = new ParallelChessSearch(start);
+        Collection<Configuration> path = search.solve();
+        System.out.println("Searched Configs: " + search.getNodes());
+        System.out.println("Dead Configs: " + search.getDeadPositions());
+        printPath(path);
+    }
+
+    /**
+     * solves for a chess puzzle with breadth first search spread over
+     * worker processes
+     *
+     * @param start starting board
+     * @param workers the number of worker processes
+     * @throws IOException if a worker cannot be started or fails
+     */
+    public static void solveChessDistributed(ChessConfig start, int workers) throws IOException {
+        DistributedSolver solver = new DistributedSolver(start, workers);
+        Collection<Configuration> path = solver.solve();
+        System.out.println("Total Configs: " + (solver.getTotalConfigs() + 1));
+        System.out.println("Unique Configs: " + solver.getUniqueConfigs());
+        printPath(path);
+    }
+
+    /**
+     * solves a chess puzzle depth first and prints the result on one line:
+     * the file, the number of captures and the captures themselves. late
+     * game positions are shared with every other puzzle of the same size
+     *
+     * @param filename the chess file
+     */
+    public static void solveChessCompact(String filename){
+        try{
+            ChessConfig start = new ChessConfig(filename);
+            ChessSearch search = new ChessSearch(start);
+            search.useSharedCache(SubpositionCache.forBoard(start.getRows(), start.getCols(), start.getRules()));
+            search.solve();
+            MoveList moves = search.getMoveList();
+            if(moves == null){
+                System.out.println(filename + " no solution");
+            }
+            else{
+                System.out.println(filename + " " + moves.size() + " " + moves);
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            System.out.println(filename + " error " + e.getMessage());
+        }
+    }
+
+    /**
+     * counts every solution of a chess puzzle
+     *
+     * @param start starting board
+     */
+    public static void countSolutions(ChessConfig start){
+        SolutionCounter counter = new SolutionCounter(start);
+        BigInteger solutions = counter.count();
+        System.out.println("Unique Configs: " + counter.getUniqueConfigs());
+        System.out.println("Solutions: " + solutions);
+        System.out.println("Solvable First Moves: " + counter.getSolvableFirstMoves()
+                + "/" + counter.getFirstMoves());
+    }
+
+    /**
+     * prints the captures of every solution of a chess puzzle, or of the
+     * first few
+     *
+     * @param start starting board
+     * @param limit most solutions to print, 0 for all of them
+     */
+    public static void listSolutions(ChessConfig start, long limit){
+        Stream<MoveList> solutions = SolutionIterator.stream(start);
+        if(limit > 0){
+            solutions = solutions.limit(limit);
+        }
+        long[] printed = {0};
+        solutions.forEach(moves -> System.out.println("Solution " + ++printed[0] + ": " + moves));
+        System.out.println("Solutions: " + printed[0]);
+    }
+
+    /**
+     * prints each step of a solution
+     *
+     * @param path the sequence from start to end configs
+     */
+    private static void printPath(Collection<Configuration> path){
         if(path.isEmpty()){
             System.out.println("No solution");
         }
@@ -41,21 +205,102 @@ public class Chess {
     /**
      * the main method, runs chess solver
      *
-     * @param args contains the chess file
+     * @param args contains the chess file, optionally preceded by
+     *             --bfs to search breadth first instead of letting the
+     *             solver pick, --ranked to search breadth first with a bit
+     *             for every position, --dfs to search depth first, --dfs=ordering to search
+     *             depth first with a move ordering, --nogoods=file to keep
+     *             dead positions across depth first runs, --parallel to
+     *             search depth first on every core, --distributed=n to
+     *             search breadth first over n worker processes, --count
+     *             to count solutions, --all[=k] to list every solution
+     *             or the first k, or --beam[=width] to keep only the most
+     *             promising positions of each layer; or --compact followed by any number
+     *             of chess files to print one line per puzzle
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java Chess filename");
+        String mode = "";
+        String nogoodFile = null;
+        List<String> filenames = new ArrayList<>();
+        boolean valid = true;
+        for(String arg: args){
+            if(arg.startsWith("--nogoods=")){
+                nogoodFile = arg.substring("--nogoods=".length());
+            }
+            else if(arg.equals("--bfs") || arg.equals("--ranked") || arg.equals("--dfs") || arg.startsWith("--dfs=")
+                    || arg.equals("--parallel") || arg.equals("--compact")
+                    || arg.startsWith("--distributed=") || arg.equals("--count") || arg.equals("--all")
+                    || arg.startsWith("--all=") || arg.equals("--beam") || arg.startsWith("--beam=")){
+                valid &= mode.isEmpty();
+                mode = arg;
+            }
+            else if(arg.startsWith("--")){
+                // a mistyped mode is not a file name
+                valid = false;
+            }
+            else{
+                filenames.add(arg);
+            }
+        }
+        if (mode.equals("--compact") && valid && nogoodFile == null && !filenames.isEmpty()) {
+            for(String filename: filenames){
+                solveChessCompact(filename);
+            }
+            SubpositionCache.getCaches().forEach((scope, cache) ->
+                    System.out.println("Shared cache " + scope + ": " + cache));
+        }
+        else if (!valid || filenames.size() != 1 || mode.equals("--compact")
+                || (nogoodFile != null && !mode.startsWith("--dfs"))) {
+            System.out.println("Usage: java Chess [--bfs | --ranked | --dfs[=ordering] [--nogoods=file] | --parallel"
+                    + " | --distributed=n | --count | --all[=k] | --beam[=width]] filename");
+            System.out.println("       java Chess --compact filename...");
         }
         else{
             try{
-                ChessConfig init = new ChessConfig(args[0]);
+                ChessConfig init = new ChessConfig(filenames.get(0));
                 System.out.println("Initial Board:");
                 System.out.println(init);
-                solveChess(init);
+                if(mode.startsWith("--dfs")){
+                    MoveOrdering ordering = mode.startsWith("--dfs=")
+                            ? MoveOrdering.named(mode.substring("--dfs=".length())) : MoveOrdering.NATURAL;
+                    if(nogoodFile == null){
+                        solveChessDepthFirst(init, ordering, null);
+                    }
+                    else{
+                        try(NogoodStore nogoods = new NogoodStore(Path.of(nogoodFile))){
+                            solveChessDepthFirst(init, ordering, nogoods);
+                        }
+                    }
+                }
+                else if(mode.equals("--parallel")){
+                    solveChessParallel(init);
+                }
+                else if(mode.startsWith("--distributed=")){
+                    solveChessDistributed(init, Integer.parseInt(mode.substring("--distributed=".length())));
+                }
+                else if(mode.equals("--count")){
+                    countSolutions(init);
+                }
+                else if(mode.startsWith("--all")){
+                    listSolutions(init, mode.startsWith("--all=") ? Long.parseLong(mode.substring("--all=".length())) : 0);
+                }
+                else if(mode.startsWith("--beam")){
+                    int width = mode.startsWith("--beam=")
+                            ? Integer.parseInt(mode.substring("--beam=".length())) : BeamSearch.fallbackWidth();
+                    solveChess(init, SolveStrategy.beam(width));
+                }
+                else if(mode.equals("--ranked")){
+                    solveChess(init, SolveStrategy.RANKED_BREADTH_FIRST);
+                }
+                else if(mode.equals("--bfs")){
+                    solveChess(init, SolveStrategy.BREADTH_FIRST);
+                }
+                else{
+                    solveChess(init);
+                }
             }
-            catch (IOException ioe) {
-                System.out.println(ioe.getMessage());
+            catch (IOException | IllegalArgumentException e) {
+                System.out.println(e.getMessage());
             }
         }
     }
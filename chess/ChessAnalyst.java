@@ -0,0 +1,30 @@
+package puzzles.chess.model;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * the solving a {@link ChessModel} asks for, for its hints and for the
+ * background analysis of the player's captures. the solver supplies it
+ * and the view hands it to the model, so the model does not depend on the
+ * solver.
+ *
+ * @author Kristin Yap
+ */
+public interface ChessAnalyst {
+    /**
+     * solves a config for a hint
+     *
+     * @param start the config, which the analyst may keep
+     * @return whether it can be solved and the captures of a solution
+     */
+    SolveCache.Result solve(ChessConfig start);
+
+    /**
+     * can a config still be solved? called on the analysis thread
+     *
+     * @param config the config, which the analyst may keep
+     * @param stop true once the answer is no longer wanted
+     * @return whether it can be solved, or null if the search was stopped
+     */
+    Boolean isSolvable(ChessConfig config, BooleanSupplier stop);
+}
@@ -0,0 +1,603 @@
+package puzzles.chess.model;
+
+import puzzles.common.Coordinates;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a mutable board used by the search engines. a move is packed into an int
+ * and applied to the board in place with {@link #makeMove(int)} and undone
+ * with {@link #unmakeMove(int)}, so walking the game tree does not allocate.
+ * movement comes from the same {@link PieceRules} as
+ * {@link ChessConfig#getNeighbors()}: sliding pieces may capture any piece
+ * along their lines.
+ *
+ * @author Kristin Yap
+ */
+public class ChessBoard {
+    /** an empty square */
+    public static final char EMPTY = '.';
+    /** bits used by each square in an encoded move */
+    private static final int SQUARE_BITS = 10;
+    /** mask for one square of an encoded move */
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+    /** the largest board that moves can be encoded for */
+    public static final int MAX_SQUARES = 1 << SQUARE_BITS;
+    /** separates the squares of an encoding from the piece definitions */
+    private static final char RULES_SEPARATOR = '|';
+
+    /** board rows */
+    private final int rows;
+    /** board cols */
+    private final int cols;
+    /** the squares of the board in row-major order */
+    private final char[] cells;
+    /** how the pieces capture */
+    private final PieceRules rules;
+    /** squares each piece on each square could capture on, null for pieces with no rules */
+    private final int[][][] targets;
+    /** squares that started with a piece; no other square is ever occupied */
+    private final int[] slotSquares;
+    /** slot index for each square, -1 for squares that started empty */
+    private final int[] squareSlots;
+    /** piece types present on the board, the code of a type is its index + 1 */
+    private final String codes;
+    /** bits used by each slot in the packed key */
+    private final int slotBits;
+    /** does the packed key describe the board exactly? */
+    private final boolean exactKey;
+    /** the number of pieces on the board */
+    private int pieceCount;
+    /** the key of the current position */
+    private long key;
+    /** hash of the current position, comparable across puzzles */
+    private long hash;
+    /** a second hash of the current position, independent of the first */
+    private long checkHash;
+
+    /**
+     * creates a search board from a configuration
+     *
+     * @param config the configuration to copy
+     */
+    public ChessBoard(ChessConfig config) {
+        this(config.getRows(), config.getCols(), cellsOf(config), config.getRules());
+    }
+
+    /**
+     * creates a search board from the squares of a board
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param cells the squares in row-major order, which the board takes over
+     * @param rules how the pieces capture
+     */
+    private ChessBoard(int rows, int cols, char[] cells, PieceRules rules) {
+        this.rows = rows;
+        this.cols = cols;
+        if (rows * cols > MAX_SQUARES) {
+            throw new IllegalArgumentException("Board too large: " + rows + "x" + cols);
+        }
+        this.cells = cells;
+        StringBuilder types = new StringBuilder();
+        int slots = 0;
+        for (char piece : cells) {
+            if (piece != EMPTY) {
+                slots++;
+                if (types.indexOf(String.valueOf(piece)) < 0) {
+                    types.append(piece);
+                }
+            }
+        }
+        codes = types.toString();
+        slotBits = 32 - Integer.numberOfLeadingZeros(codes.length());
+        exactKey = slots * slotBits <= Long.SIZE;
+        slotSquares = new int[slots];
+        squareSlots = new int[cells.length];
+        int slot = 0;
+        for (int square = 0; square < cells.length; square++) {
+            squareSlots[square] = -1;
+            if (cells[square] != EMPTY) {
+                slotSquares[slot] = square;
+                squareSlots[square] = slot++;
+                key ^= keyOf(square, cells[square]);
+                hash ^= hashOf(square, cells[square]);
+                checkHash ^= checkHashOf(square, cells[square]);
+            }
+        }
+        pieceCount = slots;
+        this.rules = rules;
+        targets = rules.compile(rows, cols);
+    }
+
+    /**
+     * copies the squares of a configuration
+     *
+     * @param config the configuration
+     * @return its squares in row-major order
+     */
+    private static char[] cellsOf(ChessConfig config) {
+        char[] cells = new char[config.getRows() * config.getCols()];
+        for (int square = 0; square < cells.length; square++) {
+            cells[square] = config.getCell(square / config.getCols(), square % config.getCols());
+        }
+        return cells;
+    }
+
+    /**
+     * creates a search board from an encoded position
+     *
+     * @param encoding a position from {@link #encode()}
+     * @return the board
+     * @throws IllegalArgumentException if the encoding is malformed
+     */
+    public static ChessBoard fromEncoding(String encoding) {
+        int x = encoding.indexOf('x');
+        int colon = encoding.indexOf(':');
+        int separator = encoding.indexOf(RULES_SEPARATOR);
+        int end = separator < 0 ? encoding.length() : separator;
+        try {
+            int rows = Integer.parseInt(encoding.substring(0, x));
+            int cols = Integer.parseInt(encoding.substring(x + 1, colon));
+            char[] cells = encoding.substring(colon + 1, end).toCharArray();
+            if (cells.length != rows * cols) {
+                throw new IllegalArgumentException("Bad board encoding: " + encoding);
+            }
+            PieceRules rules = separator < 0 ? PieceRules.STANDARD : PieceRules.parse(encoding.substring(end + 1));
+            return new ChessBoard(rows, cols, cells, rules);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Bad board encoding: " + encoding);
+        }
+    }
+
+    /**
+     * creates a search board from the text of a puzzle file: any piece
+     * definitions, the rows and cols, then one line of squares for each row
+     *
+     * @param lines the lines of the puzzle
+     * @return the board
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static ChessBoard fromText(List<String> lines) {
+        PieceRules rules = PieceRules.STANDARD;
+        int line = 0;
+        while (line < lines.size() && PieceRules.isDefinition(lines.get(line))) {
+            rules = rules.define(lines.get(line++));
+        }
+        try {
+            String[] dim = lines.get(line++).strip().split("\\s+");
+            int rows = Integer.parseInt(dim[0]);
+            int cols = Integer.parseInt(dim[1]);
+            if (rows < 1 || cols < 1 || (long) rows * cols > MAX_SQUARES) {
+                throw new IllegalArgumentException("Bad board size: " + rows + "x" + cols);
+            }
+            char[] cells = new char[rows * cols];
+            for (int row = 0; row < rows; row++) {
+                String[] squares = lines.get(line++).strip().split("\\s+");
+                if (squares.length != cols) {
+                    throw new IllegalArgumentException("Row " + row + " does not have " + cols + " squares");
+                }
+                for (int col = 0; col < cols; col++) {
+                    cells[row * cols + col] = squares[col].charAt(0);
+                }
+            }
+            return new ChessBoard(rows, cols, cells, rules);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Bad puzzle text at line " + line);
+        }
+    }
+
+    /**
+     * copies a search board so another thread can search from the same
+     * position
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        rows = other.rows;
+        cols = other.cols;
+        cells = other.cells.clone();
+        rules = other.rules;
+        targets = other.targets;
+        slotSquares = other.slotSquares;
+        squareSlots = other.squareSlots;
+        codes = other.codes;
+        slotBits = other.slotBits;
+        exactKey = other.exactKey;
+        pieceCount = other.pieceCount;
+        key = other.key;
+        hash = other.hash;
+        checkHash = other.checkHash;
+    }
+
+    /**
+     * writes every legal capture into the buffer
+     *
+     * @param buffer the buffer to fill, at least {@link #maxMoves(int)} long
+     * @return the number of moves written
+     */
+    public int generateMoves(int[] buffer) {
+        int count = 0;
+        for (int from : slotSquares) {
+            int[][] reach = targetsOf(cells[from]);
+            if (reach == null) {
+                continue;
+            }
+            for (int to : reach[from]) {
+                char captured = cells[to];
+                if (captured != EMPTY) {
+                    buffer[count++] = encode(from, to, captured);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * the target table of a piece
+     *
+     * @param piece the piece
+     * @return target squares by starting square, or null for an empty
+     *          square or a piece with no rules
+     */
+    private int[][] targetsOf(char piece) {
+        return piece < targets.length ? targets[piece] : null;
+    }
+
+    /**
+     * counts the captures the piece on a square can make
+     *
+     * @param square the square
+     * @return the number of captures, zero for an empty square
+     */
+    public int mobility(int square) {
+        int[][] reach = targetsOf(cells[square]);
+        if (reach == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int to : reach[square]) {
+            if (cells[to] != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * counts the pieces that can capture on a square
+     *
+     * @param square the square
+     * @return the number of attackers
+     */
+    public int attackers(int square) {
+        int count = 0;
+        for (int from : slotSquares) {
+            int[][] reach = targetsOf(cells[from]);
+            if (reach != null && from != square) {
+                for (int to : reach[from]) {
+                    if (to == square) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * counts the pieces that cannot capture or be captured
+     *
+     * @return the number of isolated pieces
+     */
+    public int isolatedPieces() {
+        int count = 0;
+        for (int square : slotSquares) {
+            if (cells[square] != EMPTY && mobility(square) == 0 && attackers(square) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * does a piece move along whole lines?
+     *
+     * @param piece the piece
+     * @return true for bishops, queens, rooks and pieces defined with a ray
+     */
+    public boolean isLongRange(char piece) {
+        return rules.slides(piece);
+    }
+
+    /** returns the squares that started with a piece, in row-major order */
+    public int[] getSlotSquares() {
+        return slotSquares.clone();
+    }
+
+    /**
+     * the most captures a position with the given number of pieces can have
+     *
+     * @param pieces number of pieces
+     * @return size of a move buffer big enough for that position
+     */
+    public static int maxMoves(int pieces) {
+        return Math.max(1, pieces * (pieces - 1));
+    }
+
+    /**
+     * moves a piece onto the square it captures
+     *
+     * @param move an encoded move from {@link #generateMoves(int[])}
+     */
+    public void makeMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        char piece = cells[from];
+        key ^= keyOf(from, piece) ^ keyOf(to, captured(move)) ^ keyOf(to, piece);
+        hash ^= hashOf(from, piece) ^ hashOf(to, captured(move)) ^ hashOf(to, piece);
+        checkHash ^= checkHashOf(from, piece) ^ checkHashOf(to, captured(move)) ^ checkHashOf(to, piece);
+        cells[to] = piece;
+        cells[from] = EMPTY;
+        pieceCount--;
+    }
+
+    /**
+     * takes back a move made with {@link #makeMove(int)}
+     *
+     * @param move the encoded move
+     */
+    public void unmakeMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        char piece = cells[to];
+        char captured = captured(move);
+        key ^= keyOf(from, piece) ^ keyOf(to, captured) ^ keyOf(to, piece);
+        hash ^= hashOf(from, piece) ^ hashOf(to, captured) ^ hashOf(to, piece);
+        checkHash ^= checkHashOf(from, piece) ^ checkHashOf(to, captured) ^ checkHashOf(to, piece);
+        cells[from] = piece;
+        cells[to] = captured;
+        pieceCount++;
+    }
+
+    /**
+     * the key contribution of a piece on a square
+     *
+     * @param square the square
+     * @param piece the piece
+     * @return bits to xor into the key
+     */
+    private long keyOf(int square, char piece) {
+        if (exactKey) {
+            return (long) (codes.indexOf(piece) + 1) << (squareSlots[square] * slotBits);
+        }
+        return hashOf(square, piece);
+    }
+
+    /**
+     * the hash contribution of a piece on a square. a board hashes to the
+     * xor of this over its squares, so a move updates the hash with three xors
+     *
+     * @param square the square in row-major order
+     * @param piece the piece, or {@link #EMPTY}
+     * @return bits to xor into the hash, zero for an empty square
+     */
+    public static long hashOf(int square, char piece) {
+        if (piece == EMPTY) {
+            return 0L;
+        }
+        long z = (square * 0x100L + piece) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * the contribution of a piece on a square to {@link #checkHash()}. it is
+     * mixed with other constants than {@link #hashOf(int, char)}, so the two
+     * hashes of different positions agree only by independent chances
+     *
+     * @param square the square in row-major order
+     * @param piece the piece, or {@link #EMPTY}
+     * @return bits to xor into the check hash, zero for an empty square
+     */
+    public static long checkHashOf(int square, char piece) {
+        if (piece == EMPTY) {
+            return 0L;
+        }
+        long z = (square * 0x100L + piece) * 0xD1B54A32D192ED03L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * packs a capture into an int
+     *
+     * @param from square of the moving piece
+     * @param to square of the captured piece
+     * @param captured the captured piece
+     * @return the encoded move
+     */
+    public static int encode(int from, int to, char captured) {
+        return from | to << SQUARE_BITS | captured << (2 * SQUARE_BITS);
+    }
+
+    /** returns the square the encoded move starts on */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /** returns the square the encoded move captures on */
+    public static int to(int move) {
+        return (move >>> SQUARE_BITS) & SQUARE_MASK;
+    }
+
+    /** returns the piece the encoded move captures */
+    public static char captured(int move) {
+        return (char) (move >>> (2 * SQUARE_BITS));
+    }
+
+    /**
+     * the coordinates of a square
+     *
+     * @param square the square
+     * @return its row and col
+     */
+    public Coordinates coordinates(int square) {
+        return new Coordinates(square / cols, square % cols);
+    }
+
+    /**
+     * identifies the current position. when {@link #hasExactKey()} is true
+     * two positions of the same puzzle have the same key only if they are
+     * equal, otherwise the key is a 64 bit hash.
+     *
+     * @return the key
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * hashes the current position from its squares alone, so equal boards
+     * hash the same in every puzzle and every run
+     *
+     * @return the hash
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * a second hash of the current position, from its squares alone like
+     * {@link #hash()} but independent of it, for telling apart positions
+     * whose hashes collide
+     *
+     * @return the check hash
+     */
+    public long checkHash() {
+        return checkHash;
+    }
+
+    /**
+     * encodes the current position as text that identifies it in any
+     * puzzle, e.g. "2x3:..PNB.". puzzles that define their own pieces have
+     * the definitions after a bar, e.g. "2x3:..PCB.|piece_C_leap_3,1"
+     *
+     * @return the encoding
+     */
+    public String encode() {
+        String encoding = rows + "x" + cols + ":" + String.valueOf(cells);
+        return rules.isStandard() ? encoding : encoding + RULES_SEPARATOR + rules.getDefinitions();
+    }
+
+    /**
+     * the hash {@link #hash()} gives for an encoded position
+     *
+     * @param encoding a position from {@link #encode()}
+     * @return the hash of the position
+     */
+    public static long hashOf(String encoding) {
+        int start = encoding.indexOf(':') + 1;
+        int separator = encoding.indexOf(RULES_SEPARATOR);
+        int end = separator < 0 ? encoding.length() : separator;
+        long result = 0;
+        for (int square = 0; start + square < end; square++) {
+            result ^= hashOf(square, encoding.charAt(start + square));
+        }
+        return result;
+    }
+
+    /**
+     * sets the board to the position with an exact key
+     *
+     * @param key a key from {@link #key()} of a board of the same puzzle
+     * @throws IllegalStateException if the board does not have exact keys
+     */
+    public void decode(long key) {
+        if (!exactKey) {
+            throw new IllegalStateException("Keys of this board are hashes");
+        }
+        long mask = (1L << slotBits) - 1;
+        pieceCount = 0;
+        hash = 0;
+        checkHash = 0;
+        for (int slot = 0; slot < slotSquares.length; slot++) {
+            int code = (int) ((key >>> (slot * slotBits)) & mask);
+            char piece = code == 0 ? EMPTY : codes.charAt(code - 1);
+            cells[slotSquares[slot]] = piece;
+            if (piece != EMPTY) {
+                pieceCount++;
+                hash ^= hashOf(slotSquares[slot], piece);
+                checkHash ^= checkHashOf(slotSquares[slot], piece);
+            }
+        }
+        this.key = key;
+    }
+
+    /**
+     * sets the board to the position with the given piece on each square
+     * that started with one
+     *
+     * @param pieces the piece on each slot, in the order of
+     *               {@link #getSlotSquares()}, {@link #EMPTY} for none
+     * @throws IllegalArgumentException if there is not one piece for each slot
+     */
+    public void setSlots(char[] pieces) {
+        if (pieces.length != slotSquares.length) {
+            throw new IllegalArgumentException("Expected " + slotSquares.length + " slots, got " + pieces.length);
+        }
+        key = 0;
+        hash = 0;
+        checkHash = 0;
+        pieceCount = 0;
+        for (int slot = 0; slot < pieces.length; slot++) {
+            int square = slotSquares[slot];
+            cells[square] = pieces[slot];
+            if (pieces[slot] != EMPTY) {
+                pieceCount++;
+                key ^= keyOf(square, pieces[slot]);
+                hash ^= hashOf(square, pieces[slot]);
+                checkHash ^= checkHashOf(square, pieces[slot]);
+            }
+        }
+    }
+
+    /** does {@link #key()} describe the board exactly? */
+    public boolean hasExactKey() {
+        return exactKey;
+    }
+
+    /** returns how the pieces capture */
+    public PieceRules getRules() {
+        return rules;
+    }
+
+    /** returns the number of pieces left */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    /** returns the number of pieces the board started with */
+    public int getSlotCount() {
+        return slotSquares.length;
+    }
+
+    /** returns the piece on a square */
+    public char getCell(int square) {
+        return cells[square];
+    }
+
+    /** return rows */
+    public int getRows() {
+        return rows;
+    }
+
+    /** return cols */
+    public int getCols() {
+        return cols;
+    }
+}
@@ -0,0 +1,123 @@
+package puzzles.chess.model;
+
+import java.util.Random;
+
+/**
+ * checks of {@link ChessBoard}. run it with
+ * {@code java puzzles.chess.model.ChessBoardTest}; the first failed check
+ * throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class ChessBoardTest {
+    /** pieces put on the random boards */
+    private static final String PIECES = "KQRBNP";
+
+    /**
+     * runs every check
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        hashesFollowMoves();
+        hashesFollowSetSlotsAndDecode();
+        System.out.println("ChessBoardTest: ok");
+    }
+
+    /**
+     * after every capture, and after taking them all back, both hashes are
+     * those of a board made from scratch, and a copy has them too
+     */
+    private static void hashesFollowMoves() {
+        Random random = new Random(41);
+        for (int trial = 0; trial < 500; trial++) {
+            ChessBoard board = randomBoard(random);
+            String start = board.encode();
+            int[] line = new int[board.getPieceCount()];
+            int made = 0;
+            int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+            int count;
+            while ((count = board.generateMoves(buffer)) > 0) {
+                line[made++] = buffer[random.nextInt(count)];
+                board.makeMove(line[made - 1]);
+                checkHashes(board);
+                checkHashes(new ChessBoard(board));
+            }
+            while (made > 0) {
+                board.unmakeMove(line[--made]);
+                checkHashes(board);
+            }
+            check(board.encode().equals(start), "captures not taken back");
+        }
+    }
+
+    /** a board set to a position by its slots or its key has that position's hashes */
+    private static void hashesFollowSetSlotsAndDecode() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 500; trial++) {
+            ChessBoard board = randomBoard(random);
+            ChessBoard other = new ChessBoard(board);
+            int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+            int count;
+            while ((count = other.generateMoves(buffer)) > 0 && random.nextBoolean()) {
+                other.makeMove(buffer[random.nextInt(count)]);
+            }
+            int[] slotSquares = board.getSlotSquares();
+            char[] slots = new char[slotSquares.length];
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = other.getCell(slotSquares[slot]);
+            }
+            ChessBoard set = new ChessBoard(board);
+            set.setSlots(slots);
+            checkHashes(set);
+            check(set.encode().equals(other.encode()), "setSlots gave another position");
+            if (board.hasExactKey()) {
+                ChessBoard decoded = new ChessBoard(board);
+                decoded.decode(other.key());
+                checkHashes(decoded);
+                check(decoded.encode().equals(other.encode()), "decode gave another position");
+            }
+        }
+    }
+
+    /**
+     * a random board of 3 to 5 rows and cols, with a piece on about half
+     * the squares
+     *
+     * @param random the source of the board
+     * @return the board
+     */
+    private static ChessBoard randomBoard(Random random) {
+        int rows = 3 + random.nextInt(3);
+        int cols = 3 + random.nextInt(3);
+        StringBuilder cells = new StringBuilder();
+        for (int square = 0; square < rows * cols; square++) {
+            cells.append(random.nextBoolean() ? PIECES.charAt(random.nextInt(PIECES.length())) : ChessBoard.EMPTY);
+        }
+        return ChessBoard.fromEncoding(rows + "x" + cols + ":" + cells);
+    }
+
+    /**
+     * fails unless a board's hashes are those of the same position made from scratch
+     *
+     * @param board the board
+     */
+    private static void checkHashes(ChessBoard board) {
+        ChessBoard fresh = ChessBoard.fromEncoding(board.encode());
+        check(board.hash() == fresh.hash(), "hash out of step on " + board.encode());
+        check(board.checkHash() == fresh.checkHash(), "check hash out of step on " + board.encode());
+        check(board.getPieceCount() == fresh.getPieceCount(), "piece count out of step on " + board.encode());
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
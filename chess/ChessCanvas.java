@@ -0,0 +1,97 @@
+package puzzles.chess.gui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import puzzles.chess.model.ChessModel;
+import puzzles.common.Coordinates;
+
+import java.util.function.Consumer;
+
+/**
+ * draws the board on a single canvas instead of a grid of buttons, so the
+ * scene graph stays the same size however big the board is. clicks are
+ * turned into board coordinates by dividing by the cell size.
+ *
+ * @author Kristin Yap
+ */
+public class ChessCanvas extends Canvas {
+    /** the model being drawn */
+    private final ChessModel model;
+    /** width and height of a square */
+    private final int cellSize;
+    /** the piece images */
+    private final PieceSprites sprites;
+    /** width of the border drawn by {@link #outline(int, int, Color)} */
+    private static final int OUTLINE_WIDTH = 3;
+
+    /**
+     * creates a canvas for the model's current board
+     *
+     * @param model the model being drawn
+     * @param cellSize width and height of a square
+     * @param onClick receives the coordinates of each clicked square
+     */
+    public ChessCanvas(ChessModel model, int cellSize, Consumer<Coordinates> onClick) {
+        super(model.getCols() * cellSize, model.getRows() * cellSize);
+        this.model = model;
+        this.cellSize = cellSize;
+        this.sprites = PieceSprites.ofSize(cellSize);
+        sprites.onLoaded(this::drawAll);
+        setOnMouseClicked(event -> {
+            int row = (int) (event.getY() / cellSize);
+            int col = (int) (event.getX() / cellSize);
+            if (row >= 0 && row < model.getRows() && col >= 0 && col < model.getCols()) {
+                onClick.accept(new Coordinates(row, col));
+            }
+        });
+        drawAll();
+    }
+
+    /** draws every square */
+    public void drawAll() {
+        for (int row = 0; row < model.getRows(); row++) {
+            for (int col = 0; col < model.getCols(); col++) {
+                drawCell(row, col);
+            }
+        }
+    }
+
+    /**
+     * draws one square and its piece
+     *
+     * @param row the square's row
+     * @param col the square's col
+     */
+    public void drawCell(int row, int col) {
+        GraphicsContext graphics = getGraphicsContext2D();
+        double x = col * cellSize;
+        double y = row * cellSize;
+        graphics.setFill((row + col) % 2 == 0 ? Color.WHITE : Color.MIDNIGHTBLUE);
+        graphics.fillRect(x, y, cellSize, cellSize);
+        char piece = model.getCurrentConfig().getCell(row, col);
+        if (sprites.isLoaded(piece)) {
+            graphics.drawImage(sprites.get(piece), x, y, cellSize, cellSize);
+        }
+        else if (sprites.get(piece) == null && piece != '.') {
+            // pieces defined by the puzzle file have no image, so show their letter
+            graphics.setFill((row + col) % 2 == 0 ? Color.MIDNIGHTBLUE : Color.WHITE);
+            graphics.fillText(String.valueOf(piece), x + cellSize / 2.0 - 4, y + cellSize / 2.0 + 4);
+        }
+    }
+
+    /**
+     * draws a border just inside a square
+     *
+     * @param row the square's row
+     * @param col the square's col
+     * @param color the border color
+     */
+    public void outline(int row, int col, Color color) {
+        GraphicsContext graphics = getGraphicsContext2D();
+        graphics.setStroke(color);
+        graphics.setLineWidth(OUTLINE_WIDTH);
+        graphics.strokeRect(col * cellSize + OUTLINE_WIDTH / 2.0, row * cellSize + OUTLINE_WIDTH / 2.0,
+                cellSize - OUTLINE_WIDTH, cellSize - OUTLINE_WIDTH);
+    }
+}
@@ -2,6 +2,7 @@ package puzzles.chess.model;
 
 import puzzles.common.Coordinates;
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Successor;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
@@ -9,6 +10,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  *  * the full representation of a configuration in the Chess puzzle
@@ -16,26 +18,32 @@ import java.util.Collection;
  * @author Kristin Yap
  */
 public class ChessConfig implements Configuration {
-    /** chess puzzle rows */
-    private static int rows;
-    /** chess puzzle cols */
-
-    private static int cols;
-    /** grid of chars representing the chess board */
-
-    private char[][] grid;
-    private final static char bishop = 'B';
-    private final static char king = 'K';
-    private final static char knight = 'N';
-    private final static char pawn = 'P';
-    private final static char queen = 'Q';
-    private final static char rook = 'R';
+    /** what this config shares with every other config of its puzzle */
+    private final Puzzle puzzle;
+    /** the chess board, packed by the layout */
+    private final long[] bits;
+    /** hash of the board, kept up to date as cells change */
+    private long hash;
     private final static char empty = '.';
-    /** collection of coordinates of each piece */
-    private static Collection<Coordinates> pieces;
 
     /**
-     * initial chess configuration
+     * what every config of one puzzle shares. configs hold a reference to it
+     * rather than the puzzle living in static fields, so games of different
+     * puzzles can run side by side in one process
+     *
+     * @param rows chess puzzle rows
+     * @param cols chess puzzle cols
+     * @param layout how the board is packed into bits, sized from the rows and cols
+     * @param rules how the pieces capture, the standard pieces plus any the file defines
+     * @param targets squares each piece on each square could capture on, compiled from the rules
+     * @param pieces collection of coordinates of each piece at the start
+     */
+    private record Puzzle(int rows, int cols, BoardLayout layout, PieceRules rules, int[][][] targets,
+                          Collection<Coordinates> pieces) {}
+
+    /**
+     * initial chess configuration. the file may start with piece
+     * definitions, see {@link PieceRules}
      *
      * @param filename chess file
      * @throws IOException if file not found
@@ -43,11 +51,17 @@ public class ChessConfig implements Configuration {
     public ChessConfig(String filename) throws IOException {
         try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
             String line = in.readLine();
+            PieceRules rules = PieceRules.STANDARD;
+            while (line != null && PieceRules.isDefinition(line)) {
+                rules = rules.define(line);
+                line = in.readLine();
+            }
             String[] dim = line.split("\\s+");
-            rows = Integer.parseInt(dim[0]);
-            cols = Integer.parseInt(dim[1]);
-            grid = new char[rows][cols];
-            pieces = new ArrayList<>();
+            int rows = Integer.parseInt(dim[0]);
+            int cols = Integer.parseInt(dim[1]);
+            char[][] grid = new char[rows][cols];
+            StringBuilder types = new StringBuilder();
+            Collection<Coordinates> pieces = new ArrayList<>();
             for(int row = 0; row < rows; row++){
                 String line2 = in.readLine();
                 String[] chars = line2.split("\\s+");
@@ -58,13 +72,42 @@ public class ChessConfig implements Configuration {
                     if(spot != '.'){
                         Coordinates piece = new Coordinates(row,col);
                         pieces.add(piece);
+                        if(types.indexOf(String.valueOf(spot)) < 0){
+                            types.append(spot);
+                        }
                     }
                     col += 1;
                 }
             }
+            // every piece with rules gets a code too, so any of them can be set later
+            for(char piece : rules.getPieces().toCharArray()){
+                if(types.indexOf(String.valueOf(piece)) < 0){
+                    types.append(piece);
+                }
+            }
+            BoardLayout layout = new BoardLayout(rows, cols, types.toString());
+            puzzle = new Puzzle(rows, cols, layout, rules, rules.compile(rows, cols), pieces);
+            bits = layout.newBits();
+            for(int row = 0; row < rows; row++){
+                for(int col = 0; col < cols; col++){
+                    setCell(row, col, grid[row][col]);
+                }
+            }
         }
     }
 
+    /**
+     * copies a config, e.g. to hand to another thread while this one keeps
+     * changing in place
+     *
+     * @param other the config to copy
+     */
+    public ChessConfig(ChessConfig other){
+        this.puzzle = other.puzzle;
+        this.bits = other.bits.clone();
+        this.hash = other.hash;
+    }
+
     /**
      * copy constructor for chess config
      *
@@ -73,15 +116,32 @@ public class ChessConfig implements Configuration {
      * @param capture coordinates of the captured piece
      */
     public ChessConfig(ChessConfig other, Coordinates original, Coordinates capture){
-        rows = other.getRows();
-        cols = other.getCols();
-        this.grid = new char[rows][cols];
-        for (int row = 0; row < rows; row++) {
-            System.arraycopy(other.grid[row], 0, this.grid[row], 0, cols);
-        }
-        char temp = grid[original.row()][original.col()];
-        grid[original.row()][original.col()] = empty;
-        grid[capture.row()][capture.col()] = temp;
+        this.puzzle = other.puzzle;
+        int cols = puzzle.cols();
+        this.bits = other.bits.clone();
+        char temp = other.getCell(original.row(), original.col());
+        this.hash = captureHash(other, original.row(), original.col(), capture.row(), capture.col());
+        puzzle.layout().set(bits, original.row() * cols + original.col(), empty);
+        puzzle.layout().set(bits, capture.row() * cols + capture.col(), temp);
+    }
+
+    /**
+     * the hash a config would have after a capture
+     *
+     * @param config config before the capture
+     * @param fromRow row of the moving piece
+     * @param fromCol col of the moving piece
+     * @param toRow row of the captured piece
+     * @param toCol col of the captured piece
+     * @return hash of the resulting config
+     */
+    private static long captureHash(ChessConfig config, int fromRow, int fromCol, int toRow, int toCol){
+        char piece = config.getCell(fromRow, fromCol);
+        int cols = config.puzzle.cols();
+        int from = fromRow * cols + fromCol;
+        int to = toRow * cols + toCol;
+        return config.hash ^ ChessBoard.hashOf(from, piece)
+                ^ ChessBoard.hashOf(to, config.getCell(toRow, toCol)) ^ ChessBoard.hashOf(to, piece);
     }
 
     /**
@@ -90,25 +150,13 @@ public class ChessConfig implements Configuration {
      * @return collection of coordinates
      */
     public Collection<Coordinates> getPieces(){
-        return pieces;
+        return puzzle.pieces();
     }
 
     /** is the current config the solution? */
     @Override
     public boolean isSolution() {
-        boolean win = false;
-        int pieces = 0;
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                if (grid[row][col] != empty) {
-                    pieces++;
-                }
-            }
-        }
-        if (pieces == 1) {
-            win = true;
-        }
-        return win;
+        return puzzle.layout().count(bits) == 1;
     }
 
     /**
@@ -119,424 +167,146 @@ public class ChessConfig implements Configuration {
      * @return true if valid, false otherwise
      */
     public boolean isValid(int row, int col){
-        return grid[row][col] != empty;
+        return puzzle.layout().isOccupied(bits, row * puzzle.cols() + col);
     }
 
     /**
-     * returns collection of neighbors for a config
+     * can the piece on one square capture the piece on another?
      *
-     * @return collection of configs
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     * @return true if both squares hold pieces and the first reaches the second
      */
-    @Override
-    public Collection<Configuration> getNeighbors() {
-        ArrayList<Configuration> neighbors = new ArrayList<>();
-        for(Coordinates piece: pieces){
-            int row = piece.row();
-            int col = piece.col();
-            // configs for a bishop piece
-            if(grid[row][col] == bishop){
-                makeBishop(neighbors, row, col);
-            }
-            // configs for a king piece
-            else if(grid[row][col]  == king){
-                makeKing(neighbors, row, col);
-            }
-            // configs for a knight piece
-            else if(grid[row][col] == knight){
-                makeKnight(neighbors, row, col);
-            }
-            // configs for a pawn piece
-            else if(grid[row][col] == pawn){
-                makePawn(neighbors, row, col);
-            }
-            // configs for a queen piece
-            else if(grid[row][col] == queen){
-                makeQueen(neighbors, row, col);
-            }
-            // configs for a rook piece
-            else if(grid[row][col] == rook) {
-                makeRook(neighbors, row, col);
-            }
+    public boolean isCapture(Coordinates from, Coordinates to){
+        if(from.equals(to) || !isValid(from.row(), from.col()) || !isValid(to.row(), to.col())){
+            return false;
         }
-        return neighbors;
-    }
-
-    /**
-     * creates valid bishop configs
-     *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
-     */
-    private void makeBishop(Collection<Configuration> neighbors, int row, int col){
-        Coordinates original = new Coordinates(row, col);
-        // diagonal up left
-        int currRow = row;
-        int currCol = col;
-        while(currRow > 0 && currCol > 0){
-            currRow--;
-            currCol--;
-            if(isValid(currRow,currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig bishop = new ChessConfig(this, original, capture);
-                neighbors.add(bishop);
-            }
-        }
-        // diagonal up right
-        currRow = row;
-        currCol = col;
-        while(currRow > 0 && currCol < cols - 1){
-            currRow--;
-            currCol++;
-            if(isValid(currRow,currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig bishop = new ChessConfig(this, original, capture);
-                neighbors.add(bishop);
-            }
-        }
-        // diagonal down left
-        currRow = row;
-        currCol = col;
-        while(currRow < rows - 1 && currCol > 0){
-            currRow++;
-            currCol--;
-            if(isValid(currRow,currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig bishop = new ChessConfig(this, original, capture);
-                neighbors.add(bishop);
-            }
+        char type = getCell(from.row(), from.col());
+        int[][][] targets = puzzle.targets();
+        if(type >= targets.length || targets[type] == null){
+            return false;
         }
-        // diagonal down right
-        currRow = row;
-        currCol = col;
-        while(currRow < rows - 1 && currCol < cols - 1){
-            currRow++;
-            currCol++;
-            if(isValid(currRow,currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig bishop = new ChessConfig(this, original, capture);
-                neighbors.add(bishop);
+        int cols = puzzle.cols();
+        int square = to.row() * cols + to.col();
+        for(int target: targets[type][from.row() * cols + from.col()]){
+            if(target == square){
+                return true;
             }
         }
+        return false;
     }
 
-
     /**
-     * creates valid king configs
+     * returns collection of neighbors for a config
      *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
+     * @return collection of configs
      */
-    private void makeKing(Collection<Configuration> neighbors, int row, int col){
-        Coordinates original = new Coordinates(row, col);
-        if(row - 1 > -1){
-            if(isValid(row-1, col)){
-                Coordinates capture = new Coordinates(row - 1, col);
-                ChessConfig king = new ChessConfig(this, original, capture);
-                neighbors.add(king);
-            }
-            if(col - 1 > -1){
-                if(isValid(row-1, col-1)){
-                    Coordinates capture = new Coordinates(row - 1, col - 1);
-                    ChessConfig king1 = new ChessConfig(this, original, capture);
-                    neighbors.add(king1);
-                }
-            }
-            if(col + 1 < cols){
-                if(isValid(row-1,col+1)){
-                    Coordinates capture = new Coordinates(row - 1, col + 1);
-                    ChessConfig king1 = new ChessConfig(this, original, capture);
-                    neighbors.add(king1);
-                }
-            }
-        }
-        if(row + 1 < rows){
-            if(isValid(row+1,col)){
-                Coordinates capture = new Coordinates(row + 1, col);
-                ChessConfig king = new ChessConfig(this, original, capture);
-                neighbors.add(king);
-            }
-            if(col - 1 > -1){
-                if(isValid(row+1,col-1)){
-                    Coordinates capture = new Coordinates(row + 1, col - 1);
-                    ChessConfig king1 = new ChessConfig(this, original, capture);
-                    neighbors.add(king1);
-                }
-            }
-            if(col + 1 < cols) {
-                if(isValid(row+1,col+1)){
-                    Coordinates capture = new Coordinates(row + 1, col + 1);
-                    ChessConfig king1 = new ChessConfig(this, original, capture);
-                    neighbors.add(king1);
-                }
-            }
-        }
-        if(col - 1 > -1){
-            if(isValid(row, col-1)){
-                Coordinates capture = new Coordinates(row, col - 1);
-                ChessConfig king = new ChessConfig(this, original, capture);
-                neighbors.add(king);
-            }
-        }
-        if(col + 1 < cols){
-            if(isValid(row, col+1)){
-                Coordinates capture = new Coordinates(row, col + 1);
-                ChessConfig king = new ChessConfig(this, original, capture);
-                neighbors.add(king);
-            }
-        }
+    @Override
+    public Collection<Configuration> getNeighbors() {
+        ArrayList<Configuration> neighbors = new ArrayList<>();
+        forEachNeighbor(successor -> neighbors.add(successor.materialize()));
+        return neighbors;
     }
 
     /**
-     * creates valid knight configs
+     * visits each capture without building the config it leads to.
+     * the same successor object is reused for every capture
      *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
+     * @param visitor receives each successor
      */
-    private void makeKnight(Collection<Configuration> neighbors, int row, int col){
-        Coordinates original = new Coordinates(row, col);
-        if(row - 2 > -1){
-            if(col - 1 > -1){
-                if(isValid(row-2,col-1)){
-                    Coordinates capture = new Coordinates(row-2, col-1);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-            if(col + 1 < cols){
-                if(isValid(row-2,col+1)){
-                    Coordinates capture = new Coordinates(row-2, col+1);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-        }
-        if(row + 2 < rows){
-            if(col - 1 > -1){
-                if(isValid(row+2,col-1)){
-                    Coordinates capture = new Coordinates(row+2,col-1);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-            if(col + 1 < cols){
-                if(isValid(row+2,col+1)){
-                    Coordinates capture = new Coordinates(row+2,col+1);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-        }
-        if(col - 2 > -1){
-            if(row - 1 > -1){
-                if(isValid(row-1,col-2)){
-                    Coordinates capture = new Coordinates(row-1,col-2);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-            if(row + 1 < rows){
-                if(isValid(row+1,col-2)){
-                    Coordinates capture = new Coordinates(row+1,col-2);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-        }
-        if(col + 2 < cols){
-            if(row - 1 > -1){
-                if(isValid(row-1,col+2)){
-                    Coordinates capture = new Coordinates(row-1,col+2);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
-                }
-            }
-            if(row + 1 < rows){
-                if(isValid(row+1,col+2)){
-                    Coordinates capture = new Coordinates(row+1,col+2);
-                    ChessConfig knight = new ChessConfig(this, original, capture);
-                    neighbors.add(knight);
+    @Override
+    public void forEachNeighbor(Consumer<? super Successor> visitor) {
+        Capture capture = new Capture(visitor);
+        int cols = puzzle.cols();
+        int[][][] targets = puzzle.targets();
+        BoardLayout layout = puzzle.layout();
+        for(Coordinates piece: puzzle.pieces()){
+            int row = piece.row();
+            int col = piece.col();
+            char type = getCell(row, col);
+            if(type == empty || type >= targets.length || targets[type] == null){
+                continue;
+            }
+            capture.from(row, col);
+            // every square the piece reaches, in the order of its steps
+            for(int square: targets[type][row * cols + col]){
+                if(layout.isOccupied(bits, square)){
+                    capture.to(square / cols, square % cols);
                 }
             }
         }
     }
 
     /**
-     * create valid pawn configs
-     *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
+     * a capture from this config that has not been made yet. it hashes and
+     * compares equal to the config the capture leads to, so it can be looked
+     * up in a hash map before that config is built
      */
-    private void makePawn(Collection<Configuration> neighbors, int row, int col){
-        Coordinates original = new Coordinates(row, col);
-        if(row - 1 > -1){
-            if(col - 1 > -1){
-                if(isValid(row-1, col-1)){
-                    Coordinates capture = new Coordinates(row-1, col-1);
-                    ChessConfig pawn = new ChessConfig(this, original, capture);
-                    neighbors.add(pawn);
-                }
-            }
-            if(col + 1 < cols){
-                if(isValid(row-1, col+1)){
-                    Coordinates capture = new Coordinates(row-1, col+1);
-                    ChessConfig pawn = new ChessConfig(this, original, capture);
-                    neighbors.add(pawn);
-                }
-            }
-        }
-    }
+    private final class Capture implements Successor {
+        /** receives each capture */
+        private final Consumer<? super Successor> visitor;
+        /** row of the moving piece */
+        private int fromRow;
+        /** col of the moving piece */
+        private int fromCol;
+        /** row of the captured piece */
+        private int toRow;
+        /** col of the captured piece */
+        private int toCol;
+        /** hash of the resulting config */
+        private long hash;
 
-    /**
-     * creates valid queen configs
-     *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
-     */
-    private void makeQueen(Collection<Configuration> neighbors, int row, int col){
-        int currRow = row;
-        int currCol = col;
-        Coordinates original = new Coordinates(row, col);
-        // diagonal up left
-        while(currRow > 0 && currCol > 0){
-            currRow--;
-            currCol--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
+        /**
+         * creates a capture that reports to the visitor
+         *
+         * @param visitor receives each capture
+         */
+        Capture(Consumer<? super Successor> visitor){
+            this.visitor = visitor;
         }
-        // diagonal up right
-        currRow = row;
-        currCol = col;
-        while(currRow > 0 && currCol < cols - 1){
-            currRow--;
-            currCol++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        // diagonal down left
-        currRow = row;
-        currCol = col;
-        while(currRow < rows - 1 && currCol > 0){
-            currRow++;
-            currCol--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        // diagonal down right
-        currRow = row;
-        currCol = col;
-        while(currRow < rows - 1 && currCol < cols - 1){
-            currRow++;
-            currCol++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        currRow = row;
-        currCol = col;
-        while(currRow < rows - 1){
-            currRow++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        currRow = row;
-        currCol = col;
-        while(currRow > 0){
-            currRow--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        currRow = row;
-        currCol = col;
-        while(currCol < cols - 1){
-            currCol++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
-        }
-        currRow = row;
-        currCol = col;
-        while(currCol > 0){
-            currCol--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow,currCol);
-                ChessConfig queen = new ChessConfig(this, original, capture);
-                neighbors.add(queen);
-            }
+
+        /**
+         * sets the piece that is moving
+         *
+         * @param row row of the piece
+         * @param col col of the piece
+         */
+        void from(int row, int col){
+            fromRow = row;
+            fromCol = col;
         }
-    }
 
-    /**
-     * creates valid rook configs
-     *
-     * @param neighbors collection of neighbors
-     * @param row current row position
-     * @param col current col position
-     */
-    private void makeRook(Collection<Configuration> neighbors, int row, int col){
-        int currRow = row;
-        int currCol = col;
-        Coordinates original = new Coordinates(row, col);
-        while(currRow < rows - 1){
-            currRow++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig rook = new ChessConfig(this,original, capture);
-                neighbors.add(rook);
-            }
+        /**
+         * captures the piece on a square and passes the result to the visitor
+         *
+         * @param row row of the captured piece
+         * @param col col of the captured piece
+         */
+        void to(int row, int col){
+            toRow = row;
+            toCol = col;
+            hash = captureHash(ChessConfig.this, fromRow, fromCol, toRow, toCol);
+            visitor.accept(this);
         }
-        currRow = row;
-        currCol = col;
-        while(currRow > 0){
-            currRow--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig rook = new ChessConfig(this,original, capture);
-                neighbors.add(rook);
-            }
+
+        @Override
+        public Configuration materialize(){
+            return new ChessConfig(ChessConfig.this, new Coordinates(fromRow, fromCol),
+                    new Coordinates(toRow, toCol));
         }
-        currRow = row;
-        currCol = col;
-        while(currCol < cols - 1){
-            currCol++;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig rook = new ChessConfig(this,original, capture);
-                neighbors.add(rook);
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof ChessConfig board) || board.hash != hash || board.bits.length != bits.length){
+                return false;
             }
+            int cols = puzzle.cols();
+            return puzzle.layout().equalsAfterCapture(bits, fromRow * cols + fromCol, toRow * cols + toCol, board.bits);
         }
-        currRow = row;
-        currCol = col;
-        while(currCol > 0){
-            currCol--;
-            if(isValid(currRow, currCol)){
-                Coordinates capture = new Coordinates(currRow, currCol);
-                ChessConfig rook = new ChessConfig(this,original, capture);
-                neighbors.add(rook);
-            }
+
+        @Override
+        public int hashCode(){
+            return Long.hashCode(hash);
         }
     }
 
@@ -548,7 +318,7 @@ public class ChessConfig implements Configuration {
      * @return char at position
      */
     public char getCell(int row, int col){
-        return grid[row][col];
+        return puzzle.layout().get(bits, row * puzzle.cols() + col);
     }
 
     /**
@@ -557,19 +327,36 @@ public class ChessConfig implements Configuration {
      * @param row desired row position
      * @param col desired col position
      * @param pos char to set position to
+     * @throws IllegalArgumentException if pos is neither '.', a piece with
+     *          rules, nor a piece that was on the board at the start
      */
     public void setCell(int row, int col, char pos){
-        grid[row][col] = pos;
+        int square = row * puzzle.cols() + col;
+        hash ^= ChessBoard.hashOf(square, getCell(row, col)) ^ ChessBoard.hashOf(square, pos);
+        puzzle.layout().set(bits, square, pos);
+    }
+
+    /** returns how the pieces capture */
+    public PieceRules getRules(){
+        return puzzle.rules();
     }
 
     /** return rows */
+    @Override
     public int getRows(){
-        return rows;
+        return puzzle.rows();
     }
 
     /** return cols */
+    @Override
     public int getCols(){
-        return cols;
+        return puzzle.cols();
+    }
+
+    /** return the number of pieces on the board */
+    @Override
+    public int getPieceCount(){
+        return puzzle.layout().count(bits);
     }
 
     /**
@@ -582,27 +369,20 @@ public class ChessConfig implements Configuration {
     public boolean equals(Object other){
         boolean result = true;
         if(other instanceof ChessConfig board){
-            // checks if cells are identical among both configs
-            for(int row = 0; row < rows; row++){
-                for(int col = 0; col < cols; col++){
-                    if(!(this.getCell(row, col) == board.getCell(row, col))){
-                        result = false;
-                        break;
-                    }
-                }
-            }
+            // checks if the packed boards are identical
+            result = hash == board.hash && Arrays.equals(bits, board.bits);
         }
         return result;
     }
 
     /**
-     * returns hashCode for the current grid
+     * returns hashCode for the current board
      *
      * @return the hashcode
      */
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(this.grid);
+        return Long.hashCode(hash);
     }
 
     /**
@@ -613,6 +393,8 @@ public class ChessConfig implements Configuration {
     @Override
     public String toString(){
         StringBuilder result = new StringBuilder();
+        int rows = puzzle.rows();
+        int cols = puzzle.cols();
         for(int row = 0; row < rows; row++){
             for(int col =0; col < cols; col++){
                 if(col != cols -1){
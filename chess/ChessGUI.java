@@ -1,6 +1,7 @@
 package puzzles.chess.gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -15,17 +16,22 @@ import javafx.stage.Stage;
 import puzzles.common.Coordinates;
 import puzzles.common.Observer;
 import puzzles.chess.model.ChessModel;
+import puzzles.chess.model.ChessUpdate;
+import puzzles.chess.solver.SearchAnalyst;
 import puzzles.hoppers.model.HoppersModel;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * GUI implementation for chess
  *
  * @author Kristin Yap
  */
-public class ChessGUI extends Application implements Observer<ChessModel, String> {
+public class ChessGUI extends Application implements Observer<ChessModel, ChessUpdate> {
     private ChessModel model;
 
     /** The size of all icons, in square dimension */
@@ -35,18 +41,21 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
 
     private Stage stage;
 
-    /** The resources directory is located directly underneath the gui package */
-    private final static String RESOURCES_DIR = "resources/";
+    /** boards with more squares than this are drawn on a canvas */
+    private final static int CANVAS_SQUARES = 64;
+    /** the most pixels a canvas board may take along either side */
+    private final static int CANVAS_PIXELS = 900;
+    /** the smallest square on a canvas board */
+    private final static int MIN_CELL_SIZE = 24;
 
-    // for demonstration purposes
-    private Image bishop = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"bishop.png"));
-    private Image king = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"king.png"));
-    private Image knight = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"knight.png"));
-    private Image pawn = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"pawn.png"));
-    private Image queen = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"queen.png"));
-    private Image rook = new Image(getClass().getResourceAsStream(RESOURCES_DIR+"rook.png"));
-    /** 2d array of buttons representing the board */
+    /** the piece images for the buttons, loaded in the background */
+    private final PieceSprites sprites = PieceSprites.ofSize(ICON_SIZE);
+    /** 2d array of buttons representing the board, null when drawing on a canvas */
     private Button[][] board;
+    /** the canvas the board is drawn on, null when using buttons */
+    private ChessCanvas canvas;
+    /** draw every board on a canvas, whatever its size? */
+    private boolean alwaysCanvas;
     /** text at the top */
     private Label text;
     /** has the first piece been selected? */
@@ -57,6 +66,8 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
     private String piece2;
     /** coordinates of the current selection */
     private Coordinates selection;
+    /** the outline drawn on each square, so a selection redraws only the squares whose outline changes */
+    private Boolean[][] outlined;
     /** current file name */
     private String filename;
     /** has the gui been initialized? */
@@ -67,6 +78,9 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
             new Background( new BackgroundFill(Color.WHITE, null, null));
     private static final Background DARK =
             new Background( new BackgroundFill(Color.MIDNIGHTBLUE, null, null));
+    /** borders for pieces and captures that keep the puzzle solvable, and those that lose */
+    private static final String SAFE = "-fx-border-color: limegreen; -fx-border-width: 3";
+    private static final String LOSING = "-fx-border-color: crimson; -fx-border-width: 3";
 
     /**
      * initializes fields
@@ -75,12 +89,26 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
      */
     @Override
     public void init() throws IOException {
-        // get the file name from the command line
-        filename = getParameters().getRaw().get(0);
-        model = new ChessModel(filename);
+        // get the file name from the command line, --canvas draws every board on a canvas
+        for(String arg: getParameters().getRaw()){
+            if(arg.equals("--canvas")){
+                alwaysCanvas = true;
+            }
+            else if(filename == null){
+                filename = arg;
+            }
+        }
+        model = new ChessModel(filename, new SearchAnalyst());
         File f = new File(filename);
         filename = f.getName();
         model.addObserver(this);
+        model.enableAnalysis();
+        // pieces drawn before their image finished loading are drawn again
+        sprites.onLoaded(() -> {
+            if(board != null){
+                drawBoard();
+            }
+        });
     }
 
     /** sets top of border pane */
@@ -93,6 +121,15 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
 
     /** sets middle of border pane */
     public void setMiddle(BorderPane pane){
+        if(alwaysCanvas || model.getRows() * model.getCols() > CANVAS_SQUARES){
+            int cellSize = Math.max(MIN_CELL_SIZE, Math.min(ICON_SIZE,
+                    CANVAS_PIXELS / Math.max(model.getRows(), model.getCols())));
+            board = null;
+            canvas = new ChessCanvas(model, cellSize, this::select);
+            pane.setCenter(canvas);
+            return;
+        }
+        canvas = null;
         GridPane game = new GridPane();
         boolean isBlue;
         board = new Button[model.getRows()][model.getCols()];
@@ -106,41 +143,8 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
             for(int col = 0; col < model.getCols(); col++){
                 Coordinates selection = new Coordinates(row, col);
                 board[row][col] = new Button();
-                if(model.getPieces().containsKey(selection)){
-                    char piece = model.getPieces().get(selection);
-                    if(piece == 'B'){
-                        board[row][col].setGraphic(new ImageView(bishop));
-                    }
-                    else if (piece == 'K') {
-                        board[row][col].setGraphic(new ImageView(king));
-                    }
-                    else if(piece == 'N'){
-                        board[row][col].setGraphic(new ImageView(knight));
-                    }
-                    else if(piece == 'P'){
-                        board[row][col].setGraphic(new ImageView(pawn));
-                    }
-                    else if(piece == 'Q'){
-                        board[row][col].setGraphic(new ImageView(queen));
-                    }
-                    else if(piece == 'R'){
-                        board[row][col].setGraphic(new ImageView(rook));
-                    }
-                }
-                board[row][col].setOnAction((event -> {
-                    if(!selection1){
-                        selection1 = true;
-                        this.selection = selection;
-                        piece1 = selection.toString();
-                        model.select1(selection);
-                    }
-                    else {
-                        this.selection = selection;
-                        piece2 = selection.toString();
-                        model.select2(selection);
-                        selection1 = false;
-                    }
-                }));
+                drawCell(row, col);
+                board[row][col].setOnAction((event -> select(selection)));
                 board[row][col].setMinSize(ICON_SIZE, ICON_SIZE);
                 board[row][col].setMaxSize(ICON_SIZE, ICON_SIZE);
                 if (isBlue) {
@@ -157,6 +161,58 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
         pane.setCenter(game);
     }
 
+    /**
+     * handles a click on a square: the first click selects a piece and the
+     * second tries to capture with it
+     *
+     * @param selection the coordinates of the clicked square
+     */
+    private void select(Coordinates selection){
+        if(!selection1){
+            selection1 = true;
+            this.selection = selection;
+            piece1 = selection.toString();
+            model.select1(selection);
+        }
+        else {
+            this.selection = selection;
+            piece2 = selection.toString();
+            model.select2(selection);
+            selection1 = false;
+        }
+        // the outlines follow the selection, so redraw the squares whose outline changed
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        List<Coordinates> changed = new ArrayList<>();
+        for(int row = 0; row < model.getRows(); row++){
+            for(int col = 0; col < model.getCols(); col++){
+                Boolean safe = safety(new Coordinates(row, col));
+                if(!Objects.equals(outline(row, col), safe)){
+                    changed.add(new Coordinates(row, col));
+                    drawCell(row, col, safe);
+                }
+            }
+        }
+        if(!changed.isEmpty()){
+            commit(event, new ChessUpdate("", changed, false, model.getGeneration()));
+        }
+    }
+
+    /**
+     * the outline last drawn on a square
+     *
+     * @param row the square's row
+     * @param col the square's col
+     * @return true for a safe outline, false for a losing one, or null for
+     *          none or a square not drawn yet
+     */
+    private Boolean outline(int row, int col){
+        if(outlined == null || row >= outlined.length || col >= outlined[row].length){
+            return null;
+        }
+        return outlined[row][col];
+    }
+
     /** sets bottom of borderpane */
     public void setBottom(BorderPane pane){
         BorderPane bottom = new BorderPane();
@@ -171,6 +227,12 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
             model.reset();
         }));
         buttons.getChildren().add(reset);
+        Button undo = new Button("Undo");
+        undo.setOnAction(event -> model.undo());
+        buttons.getChildren().add(undo);
+        Button redo = new Button("Redo");
+        redo.setOnAction(event -> model.redo());
+        buttons.getChildren().add(redo);
         Button hint = new Button("Hint");
         hint.setOnAction(event -> {
             model.hint();
@@ -193,7 +255,7 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
             start(stage);
         }
         catch(Exception e){
-            update(model, "No file chosen.");
+            update(model, ChessUpdate.message("No file chosen.", model.getGeneration()));
         }
     }
 
@@ -213,45 +275,111 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
     }
 
     /**
-     * updates the view
+     * shows the piece on one square of the board
      *
-     * @param chessModel the object that wishes to inform this object
-     *                about something that has happened.
-     * @param msg optional data the server.model can send to the observer
+     * @param row the square's row
+     * @param col the square's col
+     */
+    private void drawCell(int row, int col){
+        drawCell(row, col, safety(new Coordinates(row, col)));
+    }
+
+    /**
+     * shows the piece on one square of the board with an outline
      *
+     * @param row the square's row
+     * @param col the square's col
+     * @param safe the outline, as {@link #safety(Coordinates)} gives it
      */
-    @Override
-    public void update(ChessModel chessModel, String msg) {
-        if(!initialized){
+    private void drawCell(int row, int col, Boolean safe){
+        if(outlined == null || outlined.length != model.getRows() || outlined[0].length != model.getCols()){
+            outlined = new Boolean[model.getRows()][model.getCols()];
+        }
+        outlined[row][col] = safe;
+        if(canvas != null){
+            canvas.drawCell(row, col);
+            if(safe != null){
+                canvas.outline(row, col, safe ? Color.LIMEGREEN : Color.CRIMSON);
+            }
             return;
         }
+        char piece = model.getCurrentConfig().getCell(row, col);
+        Image image = sprites.get(piece);
+        board[row][col].setGraphic(image == null ? null : new ImageView(image));
+        // pieces defined by the puzzle file have no image, so show their letter
+        board[row][col].setText(image == null && piece != '.' ? String.valueOf(piece) : "");
+        board[row][col].setStyle(safe == null ? "" : safe ? SAFE : LOSING);
+    }
+
+    /**
+     * redraws some squares of the board
+     *
+     * @param cells the squares
+     */
+    private void drawCells(List<Coordinates> cells){
+        for(Coordinates cell: cells){
+            drawCell(cell.row(), cell.col());
+        }
+    }
+
+    /** redraws every square of the board */
+    private void drawBoard(){
         for(int row = 0; row < model.getRows(); row++) {
             for (int col = 0; col < model.getCols(); col++) {
-                char piece = model.getCurrentConfig().getCell(row, col);
-                if(piece == 'B'){
-                    board[row][col].setGraphic(new ImageView(bishop));
-                }
-                else if (piece == 'K') {
-                    board[row][col].setGraphic(new ImageView(king));
-                }
-                else if(piece == 'N'){
-                    board[row][col].setGraphic(new ImageView(knight));
-                }
-                else if(piece == 'P'){
-                    board[row][col].setGraphic(new ImageView(pawn));
-                }
-                else if(piece == 'Q'){
-                    board[row][col].setGraphic(new ImageView(queen));
-                }
-                else if(piece == 'R'){
-                    board[row][col].setGraphic(new ImageView(rook));
-                }
-                else{
-                    board[row][col].setGraphic(null);
-                }
+                drawCell(row, col);
             }
         }
-        this.stage.sizeToScene();  // when a different sized puzzle is loaded
+    }
+
+    /**
+     * how a square is outlined: while a piece is selected its targets show
+     * whether capturing them keeps the puzzle solvable, otherwise each piece
+     * shows whether it has a capture that does
+     *
+     * @param cell the square
+     * @return true for a safe outline, false for a losing one, or null for none
+     */
+    private Boolean safety(Coordinates cell){
+        if(selection1 && selection != null){
+            return model.moveSafety(selection, cell);
+        }
+        return model.pieceSafety(cell);
+    }
+
+    /**
+     * updates the view. only the squares named in the update are redrawn,
+     * unless it says the whole board changed
+     *
+     * @param chessModel the object that wishes to inform this object
+     *                about something that has happened.
+     * @param update the status message and the squares that changed
+     *
+     */
+    @Override
+    public void update(ChessModel chessModel, ChessUpdate update) {
+        if(!Platform.isFxApplicationThread()){
+            // the model judges captures on its own thread
+            Platform.runLater(() -> update(chessModel, update));
+            return;
+        }
+        if(!initialized || update.generation() != model.getGeneration()){
+            // the board has changed since, maybe to another size, and was redrawn then
+            return;
+        }
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        if(update.wholeBoard()){
+            drawBoard();
+            this.stage.sizeToScene();  // when a different sized puzzle is loaded
+        }
+        else{
+            drawCells(update.changed());
+        }
+        if(update.safety() != null){
+            // only the outlines changed, the status line stays
+            commit(event, update);
+            return;
+        }
         final ChessModel.GameState gameState = model.gameState();
         if(gameState == ChessModel.GameState.NEW){
             text.setText("Loaded: " + filename);
@@ -277,8 +405,31 @@ public class ChessGUI extends Application implements Observer<ChessModel, String
         if(gameState == ChessModel.GameState.CAPTURE){
             text.setText("Captured " + piece2 + " from " + piece1 + "!");
         }
+        if(gameState == ChessModel.GameState.UNDO || gameState == ChessModel.GameState.REDO
+                || gameState == ChessModel.GameState.UNDETERMINED){
+            text.setText(update.message());
+        }
         if(gameState == ChessModel.GameState.ONGOING){
-            text.setText(msg);
+            text.setText(update.message());
+        }
+        commit(event, update);
+    }
+
+    /**
+     * records a redraw if the event is turned on
+     *
+     * @param event the event timing the redraw
+     * @param update the update that was drawn
+     */
+    private void commit(RenderEvent event, ChessUpdate update){
+        event.end();
+        if(event.shouldCommit()){
+            event.rows = model.getRows();
+            event.cols = model.getCols();
+            event.pieces = model.getPieces().size();
+            event.cells = update.wholeBoard() ? model.getRows() * model.getCols() : update.changed().size();
+            event.wholeBoard = update.wholeBoard();
+            event.commit();
         }
     }
 
@@ -2,20 +2,29 @@ package puzzles.chess.model;
 
 import puzzles.common.Coordinates;
 import puzzles.common.Observer;
-import puzzles.common.solver.Configuration;
-import puzzles.common.solver.Solver;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * the model for a chess game
+ * the model for a chess game. all of a game's state belongs to its model,
+ * so many games can be played at once in one process, each from its own
+ * thread, without sharing anything but the solver caches
  *
  * @author Kristin Yap
  */
 public class ChessModel {
-    /** the collection of observers of this model */
-    private final List<Observer<ChessModel, String>> observers = new LinkedList<>();
+    /** the collection of observers of this model, safe to walk while the analysis thread alerts them */
+    private final List<Observer<ChessModel, ChessUpdate>> observers = new CopyOnWriteArrayList<>();
+    /** solves for hints and judges captures */
+    private final ChessAnalyst analyst;
 
     /** the current configuration */
     private ChessConfig currentConfig;
@@ -27,39 +36,78 @@ public class ChessModel {
     private HashMap<Coordinates, Character> pieces;
     /** the current loaded file */
     private String currentFile;
+    /**
+     * the captures made since the file was loaded, each packed by
+     * {@link ChessBoard#encode(int, int, char)}, followed by any that were
+     * undone and can be redone
+     */
+    private int[] moveLog;
+    /** the number of captures in the log that are on the board */
+    private int made;
+    /** the number of captures in the log, made or undone */
+    private int logged;
     /** the current selected position on the board */
-    private static Coordinates selection;
+    private Coordinates selection;
     /** possible game states */
-    public enum GameState{ONGOING, NO_SOLUTION, WON, HINT, INVALID_MOVE, SELECT_NEXT, CAPTURE, NEW, SOLVED}
-    /** the game's current state */
-    private static GameState gameState;
-    private EnumMap<GameState, String> STATE_MSGS =
-            new EnumMap<>(Map.of(
-                    GameState.NEW, "Loaded: ",
-                    GameState.WON, "You won!",
-                    GameState.SOLVED, "Already solved!",
-                    GameState.NO_SOLUTION, "No more valid moves",
-                    GameState.ONGOING, "",
-                    GameState.HINT, "Next move!",
-                    GameState.INVALID_MOVE, "Invalid selection " ,
-                    GameState.SELECT_NEXT, "Selected " ,
-                    GameState.CAPTURE, "Captured "
-            ));
+    public enum GameState{ONGOING, NO_SOLUTION, WON, HINT, INVALID_MOVE, SELECT_NEXT, CAPTURE, NEW, SOLVED, UNDO, REDO, UNDETERMINED}
+    /** the game's current state, read by observers on the analysis thread too */
+    private volatile GameState gameState;
+    private static final Map<GameState, String> STATE_MSGS = Collections.unmodifiableMap(
+            new EnumMap<>(Map.ofEntries(
+                    Map.entry(GameState.NEW, "Loaded: "),
+                    Map.entry(GameState.WON, "You won!"),
+                    Map.entry(GameState.SOLVED, "Already solved!"),
+                    Map.entry(GameState.NO_SOLUTION, "No more valid moves"),
+                    Map.entry(GameState.ONGOING, ""),
+                    Map.entry(GameState.HINT, "Next move!"),
+                    Map.entry(GameState.INVALID_MOVE, "Invalid selection "),
+                    Map.entry(GameState.SELECT_NEXT, "Selected "),
+                    Map.entry(GameState.CAPTURE, "Captured "),
+                    Map.entry(GameState.UNDO, "Undid "),
+                    Map.entry(GameState.REDO, "Redid "),
+                    Map.entry(GameState.UNDETERMINED, "No solution found within the memory limit")
+            )));
+
+    /** seconds the analysis thread waits for more work before it ends */
+    private static final long ANALYSIS_KEEP_ALIVE = 30;
+    /**
+     * judges the player's captures in the background, one analysis at a
+     * time on this model's own daemon thread, or null until
+     * {@link #enableAnalysis()}. an analysis of an older config stops as
+     * soon as the config changes, so the next one rarely waits, and the
+     * thread ends when it has been idle a while
+     */
+    private ExecutorService analysis;
+    /** counts changes of the current config, so analysis of an older one can stop */
+    private final AtomicInteger generation = new AtomicInteger();
+    /** what the analysis knows about the current config */
+    private volatile Safety safety = new Safety(Map.of(), Map.of());
+
+    /**
+     * the captures of a config and what has been found out about them
+     *
+     * @param captures the number of captures, by capturing square
+     * @param judged whether each capture keeps the puzzle solvable, by
+     *               capturing square and then captured square
+     */
+    private record Safety(Map<Coordinates, Integer> captures, Map<Coordinates, Map<Coordinates, Boolean>> judged) {}
 
     /**
      * The view calls this to add itself as an observer.
      *
      * @param observer the view
      */
-    public void addObserver(Observer<ChessModel, String> observer) {
+    public void addObserver(Observer<ChessModel, ChessUpdate> observer) {
         this.observers.add(observer);
     }
 
     /**
      * The model's state has changed (the counter), so inform the view via
      * the update method
+     *
+     * @param data the message and the squares that changed
      */
-    private void alertObservers(String data) {
+    private void alertObservers(ChessUpdate data) {
         for (var observer : observers) {
             observer.update(this, data);
         }
@@ -67,25 +115,35 @@ public class ChessModel {
 
     /**
      * reads in a file name and creates a new chess config from the file
-     * initializes the current config in model
+     * initializes the current config in model. the captures are not judged
+     * in the background until {@link #enableAnalysis()} is called
      *
      * @param filename chess file
+     * @param analyst solves for hints and judges captures
      * @throws IOException
      */
-    public ChessModel(String filename) throws IOException {
+    public ChessModel(String filename, ChessAnalyst analyst) throws IOException {
+        this.analyst = Objects.requireNonNull(analyst);
         currentFile = filename;
         currentConfig = new ChessConfig(filename);
         initializeCurrentConfig();
+        analyze();
     }
 
-    /** initializes private fields from current config */
+    /** initializes private fields from current config and starts an empty move log */
     public void initializeCurrentConfig(){
         rows = currentConfig.getRows();
         cols = currentConfig.getCols();
         pieces = new HashMap<>();
         for(Coordinates piece: currentConfig.getPieces()){
-            pieces.put(piece, currentConfig.getCell(piece.row(), piece.col()));
+            if(currentConfig.isValid(piece.row(), piece.col())){
+                pieces.put(piece, currentConfig.getCell(piece.row(), piece.col()));
+            }
         }
+        // every capture removes a piece, so this many captures fit
+        moveLog = new int[Math.max(1, pieces.size() - 1)];
+        made = 0;
+        logged = 0;
     }
 
     /**
@@ -94,53 +152,205 @@ public class ChessModel {
      * @param filename name of file being read in
      */
     public void load(String filename){
+        ChessModelEvent event = ChessModelEvent.begin("load");
         try {
             currentFile = filename;
             currentConfig = new ChessConfig(filename);
             initializeCurrentConfig();
+            analyze();
             gameState = GameState.NEW;
-            alertObservers(STATE_MSGS.get(gameState));
+            alertObservers(ChessUpdate.wholeBoard(STATE_MSGS.get(gameState), generation.get()));
             gameState = GameState.ONGOING;
         } catch (IOException ioe){
             System.err.println("Cannot find file.");
+        } finally {
+            event.end(this, 0);
         }
     }
 
-    /** loads in the previously loaded file */
+    /**
+     * goes back to the start of the puzzle by undoing every capture, without
+     * reading the file again. the captures can still be redone
+     */
     public void reset() {
-        load(currentFile);
+        ChessModelEvent event = ChessModelEvent.begin("reset");
+        try {
+            Set<Coordinates> changed = new LinkedHashSet<>();
+            while(made > 0){
+                int move = moveLog[--made];
+                takeBack(move);
+                changed.add(square(ChessBoard.from(move)));
+                changed.add(square(ChessBoard.to(move)));
+            }
+            analyze();
+            gameState = GameState.NEW;
+            alertObservers(new ChessUpdate(STATE_MSGS.get(gameState), List.copyOf(changed), false, generation.get()));
+            gameState = GameState.ONGOING;
+        } finally {
+            event.end(this, 0);
+        }
+    }
+
+    /** takes back the last capture */
+    public void undo() {
+        ChessModelEvent event = ChessModelEvent.begin("undo");
+        try {
+            if(made == 0){
+                gameState = GameState.ONGOING;
+                alertObservers(ChessUpdate.message("Nothing to undo", generation.get()));
+                return;
+            }
+            int move = moveLog[--made];
+            takeBack(move);
+            analyze();
+            gameState = GameState.UNDO;
+            alertObservers(moveUpdate(move));
+            gameState = GameState.ONGOING;
+        } finally {
+            event.end(this, 0);
+        }
+    }
+
+    /** makes the last capture that was undone again */
+    public void redo() {
+        ChessModelEvent event = ChessModelEvent.begin("redo");
+        try {
+            if(made == logged){
+                gameState = GameState.ONGOING;
+                alertObservers(ChessUpdate.message("Nothing to redo", generation.get()));
+                return;
+            }
+            int move = moveLog[made++];
+            apply(move);
+            analyze();
+            gameState = pieces.size() == 1 ? GameState.WON : GameState.REDO;
+            alertObservers(moveUpdate(move));
+            if(gameState == GameState.REDO){
+                gameState = GameState.ONGOING;
+            }
+        } finally {
+            event.end(this, 0);
+        }
+    }
+
+    /** returns true if there is a capture to undo */
+    public boolean canUndo(){
+        return made > 0;
+    }
+
+    /** returns true if there is an undone capture to redo */
+    public boolean canRedo(){
+        return made < logged;
+    }
+
+    /**
+     * makes a capture on the current config and logs it, dropping any
+     * undone captures
+     *
+     * @param from coordinates of the capturing piece
+     * @param to coordinates of the captured piece
+     * @return the encoded capture
+     */
+    private int capture(Coordinates from, Coordinates to){
+        int move = ChessBoard.encode(from.row() * cols + from.col(), to.row() * cols + to.col(),
+                currentConfig.getCell(to.row(), to.col()));
+        moveLog[made++] = move;
+        logged = made;
+        apply(move);
+        return move;
+    }
+
+    /**
+     * moves the capturing piece onto the captured one, in place
+     *
+     * @param move the encoded capture
+     */
+    private void apply(int move){
+        Coordinates from = square(ChessBoard.from(move));
+        Coordinates to = square(ChessBoard.to(move));
+        char piece = currentConfig.getCell(from.row(), from.col());
+        currentConfig.setCell(from.row(), from.col(), ChessBoard.EMPTY);
+        currentConfig.setCell(to.row(), to.col(), piece);
+        pieces.remove(from);
+        pieces.put(to, piece);
+    }
+
+    /**
+     * puts the capturing piece back and the captured one with it, in place
+     *
+     * @param move the encoded capture
+     */
+    private void takeBack(int move){
+        Coordinates from = square(ChessBoard.from(move));
+        Coordinates to = square(ChessBoard.to(move));
+        char piece = currentConfig.getCell(to.row(), to.col());
+        char captured = ChessBoard.captured(move);
+        currentConfig.setCell(from.row(), from.col(), piece);
+        currentConfig.setCell(to.row(), to.col(), captured);
+        pieces.put(from, piece);
+        pieces.put(to, captured);
     }
 
     /**
-     * solves the rest of the puzzle from the current config
+     * the update for an undone or redone capture
+     *
+     * @param move the encoded capture
+     * @return the update naming the capture and its squares
+     */
+    private ChessUpdate moveUpdate(int move){
+        Coordinates from = square(ChessBoard.from(move));
+        Coordinates to = square(ChessBoard.to(move));
+        return new ChessUpdate(STATE_MSGS.get(gameState) + "capture of " + to + " from " + from,
+                List.of(from, to), false, generation.get());
+    }
+
+    /**
+     * the coordinates of a square
+     *
+     * @param square the square in row-major order
+     * @return its row and col
+     */
+    private Coordinates square(int square){
+        return new Coordinates(square / cols, square % cols);
+    }
+
+    /**
+     * solves the rest of the puzzle from the current config with the analyst
      * sets the current config to the next step in the path to the solution
      * if there is no solution from the current config, alert the user that
      * there are no more valid moves to get to the solution
      */
     public void hint(){
-        LinkedList<Configuration> path = new LinkedList<>();
-        for(Configuration config: Solver.getShortestPath(currentConfig)){
-            path.add(config);
-        }
-        path.remove(0);
-        Configuration goal = Solver.getSolution();
-        if(goal == null){
-            gameState = GameState.NO_SOLUTION;
-            alertObservers(STATE_MSGS.get(gameState));
-        }
-        else{
-            Configuration next = path.get(0);
-            currentConfig = (ChessConfig) next;
-            initializeCurrentConfig();
-            if(next.equals(goal)){
-                gameState = GameState.SOLVED;
-                alertObservers(STATE_MSGS.get(gameState));
+        ChessModelEvent event = ChessModelEvent.begin("hint");
+        SolveCache.Result result = null;
+        try {
+            result = analyst.solve(new ChessConfig(currentConfig));
+            if(!result.determined()){
+                gameState = GameState.UNDETERMINED;
+                alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
+            }
+            else if(!result.solvable() || result.moves().size() == 0){
+                gameState = GameState.NO_SOLUTION;
+                alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
             }
             else{
-                gameState = GameState.HINT;
-                alertObservers(STATE_MSGS.get(gameState));
-                gameState = GameState.ONGOING;
+                Coordinates from = result.moves().from(0);
+                Coordinates to = result.moves().to(0);
+                capture(from, to);
+                analyze();
+                List<Coordinates> changed = List.of(from, to);
+                if(result.moves().size() == 1){
+                    gameState = GameState.SOLVED;
+                    alertObservers(new ChessUpdate(STATE_MSGS.get(gameState), changed, false, generation.get()));
+                }
+                else{
+                    gameState = GameState.HINT;
+                    alertObservers(new ChessUpdate(STATE_MSGS.get(gameState), changed, false, generation.get()));
+                    gameState = GameState.ONGOING;
+                }
             }
+        } finally {
+            event.end(this, result == null ? 0 : result.totalConfigs());
         }
     }
 
@@ -151,17 +361,22 @@ public class ChessModel {
      * @return the coordinates of the selected piece if it is a valid selection
      */
     public Coordinates select1(Coordinates piece1){
-        if(pieces.containsKey(piece1)){
-            selection = piece1;
-            gameState = GameState.SELECT_NEXT;
-            alertObservers(STATE_MSGS.get(gameState));
-            return selection;
-        }
-        else{
-            gameState = GameState.INVALID_MOVE;
-            alertObservers(STATE_MSGS.get(gameState));
-            gameState = GameState.ONGOING;
-            return null;
+        ChessModelEvent event = ChessModelEvent.begin("select1");
+        try {
+            if(pieces.containsKey(piece1)){
+                selection = piece1;
+                gameState = GameState.SELECT_NEXT;
+                alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
+                return selection;
+            }
+            else{
+                gameState = GameState.INVALID_MOVE;
+                alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
+                gameState = GameState.ONGOING;
+                return null;
+            }
+        } finally {
+            event.end(this, 0);
         }
     }
 
@@ -171,7 +386,12 @@ public class ChessModel {
      * @param piece2 coordinates of the second selected piece
      */
     public void select2(Coordinates piece2){
-        select(selection, piece2);
+        ChessModelEvent event = ChessModelEvent.begin("select2");
+        try {
+            select(selection, piece2);
+        } finally {
+            event.end(this, 0);
+        }
     }
 
     /**
@@ -182,40 +402,147 @@ public class ChessModel {
      * @param piece2 coordinates of the second piece
      */
     public void select(Coordinates piece1, Coordinates piece2){
-        if(pieces.containsKey(piece2) && !(piece1 == null)){
-            Configuration move = new ChessConfig(currentConfig, piece1, piece2);
-            boolean yurr = true;
-            for(Configuration neighbor: currentConfig.getNeighbors()){
-                if(move.equals(neighbor)){
-                    currentConfig = (ChessConfig) move;
-                    pieces.put(piece2, pieces.get(piece1));
-                    pieces.remove(piece1);
+        ChessModelEvent event = ChessModelEvent.begin("select");
+        try {
+            if(pieces.containsKey(piece2) && !(piece1 == null)){
+                if(currentConfig.isCapture(piece1, piece2)){
+                    capture(piece1, piece2);
+                    analyze();
+                    List<Coordinates> changed = List.of(piece1, piece2);
                     if(pieces.size() == 1){
                         gameState = GameState.WON;
-                        alertObservers(STATE_MSGS.get(gameState));
+                        alertObservers(new ChessUpdate(STATE_MSGS.get(gameState), changed, false, generation.get()));
                     }
                     else{
                         gameState = GameState.CAPTURE;
-                        alertObservers(STATE_MSGS.get(gameState));
+                        alertObservers(new ChessUpdate(STATE_MSGS.get(gameState), changed, false, generation.get()));
                         gameState = GameState.ONGOING;
                     }
-                    yurr = false;
-                    break;
+                }
+                else {
+                    gameState = GameState.INVALID_MOVE;
+                    alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
+                    gameState = GameState.ONGOING;
                 }
             }
-            if (yurr) {
+            else{
                 gameState = GameState.INVALID_MOVE;
-                alertObservers(STATE_MSGS.get(gameState));
+                alertObservers(ChessUpdate.message(STATE_MSGS.get(gameState), generation.get()));
                 gameState = GameState.ONGOING;
             }
+        } finally {
+            event.end(this, 0);
         }
-        else{
-            gameState = GameState.INVALID_MOVE;
-            alertObservers(STATE_MSGS.get(gameState));
-            gameState = GameState.ONGOING;
+    }
+
+    /**
+     * starts judging the player's captures in the background, now and after
+     * every change of the current config, so {@link #moveSafety} and
+     * {@link #pieceSafety} have answers. a view calls this; a model without
+     * one never starts a solve it did not ask for
+     */
+    public void enableAnalysis() {
+        if (analysis == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, ANALYSIS_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), task -> {
+                        Thread thread = new Thread(task, "chess-move-safety");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            analysis = executor;
+            analyze(generation.get());
         }
     }
 
+    /** the current config changed: analysis of the earlier one stops, and the new one is analyzed if enabled */
+    private void analyze() {
+        int current = generation.incrementAndGet();
+        if (analysis != null) {
+            analyze(current);
+        }
+    }
+
+    /**
+     * starts judging every capture of the current config in the background.
+     * the analyst judges each successor, and observers are told about each
+     * capture as soon as it is judged
+     *
+     * @param current the generation of the current config
+     */
+    private void analyze(int current) {
+        // the current config changes in place, so the analysis works on a copy
+        ChessConfig config = new ChessConfig(currentConfig);
+        ChessBoard board = new ChessBoard(config);
+        int[] moves = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        int count = board.getPieceCount() > 1 ? board.generateMoves(moves) : 0;
+        Map<Coordinates, Integer> available = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            available.merge(board.coordinates(ChessBoard.from(moves[i])), 1, Integer::sum);
+        }
+        Map<Coordinates, Map<Coordinates, Boolean>> found = new ConcurrentHashMap<>();
+        safety = new Safety(available, found);
+        analysis.execute(() -> {
+            for (int i = 0; i < count && generation.get() == current; i++) {
+                Coordinates from = board.coordinates(ChessBoard.from(moves[i]));
+                Coordinates to = board.coordinates(ChessBoard.to(moves[i]));
+                Boolean solvable = analyst.isSolvable(new ChessConfig(config, from, to),
+                        () -> generation.get() != current);
+                if (solvable == null) {
+                    return;
+                }
+                found.computeIfAbsent(from, square -> new ConcurrentHashMap<>()).put(to, solvable);
+                if (generation.get() == current) {
+                    alertObservers(ChessUpdate.safety(new MoveSafety(from, to, solvable), current));
+                }
+            }
+        });
+    }
+
+    /**
+     * what the background analysis knows about a capture of the current config
+     *
+     * @param from the square of the capturing piece
+     * @param to the square of the captured piece
+     * @return whether the puzzle can still be solved after it, or null if
+     *          it is not a capture, has not been judged yet or analysis is
+     *          not enabled
+     */
+    public Boolean moveSafety(Coordinates from, Coordinates to) {
+        Map<Coordinates, Boolean> judged = safety.judged().get(from);
+        return judged == null ? null : judged.get(to);
+    }
+
+    /**
+     * what the background analysis knows about the captures of one piece
+     *
+     * @param piece the square of the piece
+     * @return true if one of its captures keeps the puzzle solvable, false
+     *          if every one of them has been judged losing, or null if it
+     *          has no captures or it is too early to say
+     */
+    public Boolean pieceSafety(Coordinates piece) {
+        Safety known = safety;
+        Map<Coordinates, Boolean> judged = known.judged().get(piece);
+        if (judged == null) {
+            return null;
+        }
+        if (judged.containsValue(true)) {
+            return true;
+        }
+        return judged.size() == known.captures().getOrDefault(piece, 0) ? false : null;
+    }
+
+    /**
+     * counts the changes of the current config: loads, captures, undos and
+     * the like. each update names the generation it is about
+     *
+     * @return the generation of the current config
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
     /** returns the current gamestate */
     public GameState gameState(){
         return gameState;
@@ -0,0 +1,73 @@
+package puzzles.chess.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * a flight recorder event for one call into the {@link ChessModel}: a
+ * load, a hint or a selection. it covers the whole call, including the
+ * solver and the observers it alerts, so a recording shows how the time of
+ * an interaction splits between solving and drawing
+ *
+ * @author Kristin Yap
+ */
+@Name("puzzles.chess.ModelAction")
+@Label("Chess Model Action")
+@Category({"Puzzles", "Chess"})
+@Description("A load, hint or selection in the chess model")
+@StackTrace(false)
+class ChessModelEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Cols")
+    int cols;
+
+    @Label("Pieces")
+    int pieces;
+
+    @Label("Nodes")
+    @Description("Configs the solver generated, zero for actions that do not solve")
+    long nodes;
+
+    @Label("State")
+    String state;
+
+    /**
+     * starts timing an action
+     *
+     * @param action the model method being called
+     * @return the event
+     */
+    static ChessModelEvent begin(String action) {
+        ChessModelEvent event = new ChessModelEvent();
+        event.action = action;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * stops timing and records the action if the event is turned on
+     *
+     * @param model the model after the action
+     * @param nodes configs the solver generated
+     */
+    void end(ChessModel model, long nodes) {
+        end();
+        if (shouldCommit()) {
+            this.rows = model.getRows();
+            this.cols = model.getCols();
+            this.pieces = model.getPieces() == null ? 0 : model.getPieces().size();
+            this.nodes = nodes;
+            this.state = String.valueOf(model.gameState());
+            commit();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.SolverPhaseEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * depth first solver for chess. the search runs on a single mutable
+ * {@link ChessBoard}, making and unmaking moves in place with one reusable
+ * move buffer per depth, and remembers positions it has proven dead.
+ * every capture removes a piece, so every solution takes the same number of
+ * moves and the first one found is also a shortest one.
+ *
+ * @author Kristin Yap
+ */
+public class ChessSearch {
+    /** the starting config, or null for a search started from a board */
+    private final ChessConfig start;
+    /** the board being searched */
+    private final ChessBoard board;
+    /**
+     * move buffers, one for each depth, each allocated when its depth is
+     * first reached and grown to the most captures seen there. a buffer for
+     * every capture a depth could have would take space cubic in the pieces
+     */
+    private final int[][] moves;
+    /** move score buffers, one for each depth, sized like the move buffers */
+    private final int[][] scores;
+    /** captures are generated here and copied into the buffer of their depth */
+    private final int[] generated;
+    /** the order captures are tried in */
+    private final MoveOrdering ordering;
+    /** the moves made so far, one for each depth */
+    private final int[] line;
+    /** positions with no solution */
+    private final PositionSet dead;
+    /** dead positions from earlier runs, or null */
+    private NogoodStore nogoods;
+    /** late game positions shared with other searches, or null */
+    private SubpositionCache shared;
+    /** the moves of the last solution found, or null */
+    private MoveList solution;
+    /** the number of positions searched */
+    private long nodes;
+    /** asked now and then whether to give up, or null to always finish */
+    private BooleanSupplier stopWhen;
+    /** did the last search give up? */
+    private boolean stopped;
+
+    /** positions searched between checks of {@link #stopWhen} */
+    private static final int STOP_CHECK_NODES = 1024;
+    /** the name of this engine in flight recorder events */
+    private static final String ENGINE = "depth first";
+
+    /**
+     * creates a search from the starting config that tries captures in the
+     * order they are generated
+     *
+     * @param start the starting config
+     */
+    public ChessSearch(ChessConfig start) {
+        this(start, MoveOrdering.NATURAL);
+    }
+
+    /**
+     * creates a search from the starting config
+     *
+     * @param start the starting config
+     * @param ordering the order captures are tried in
+     */
+    public ChessSearch(ChessConfig start, MoveOrdering ordering) {
+        this(start, new ChessBoard(start), ordering);
+    }
+
+    /**
+     * creates a search from a board, for callers that only want the moves
+     * of a solution from {@link #find()}
+     *
+     * @param board the starting position, which is copied
+     * @param ordering the order captures are tried in
+     */
+    public ChessSearch(ChessBoard board, MoveOrdering ordering) {
+        this(null, new ChessBoard(board), ordering);
+    }
+
+    /**
+     * creates a search
+     *
+     * @param start the starting config, or null
+     * @param board the board to search on
+     * @param ordering the order captures are tried in
+     */
+    private ChessSearch(ChessConfig start, ChessBoard board, MoveOrdering ordering) {
+        this.start = start;
+        this.ordering = ordering;
+        this.board = board;
+        this.dead = new PositionSet(board);
+        int pieces = board.getPieceCount();
+        this.moves = new int[Math.max(1, pieces)][];
+        this.scores = new int[moves.length][];
+        this.generated = new int[ChessBoard.maxMoves(pieces)];
+        this.line = new int[moves.length];
+    }
+
+    /**
+     * prunes positions found in the store and records the dead positions
+     * this search proves in it
+     *
+     * @param nogoods the store, or null to search without one
+     */
+    public void useNogoods(NogoodStore nogoods) {
+        this.nogoods = nogoods;
+    }
+
+    /**
+     * looks up late game positions in a cache shared with other searches,
+     * and stores what this search learns about them there
+     *
+     * @param shared the cache for this puzzle's board, or null to search without one
+     */
+    public void useSharedCache(SubpositionCache shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * lets the caller give up on a search, e.g. when the player has moved
+     * on and the answer is no longer wanted. the condition is checked every
+     * {@link #STOP_CHECK_NODES} positions, and a search that stops proves
+     * nothing, so no dead positions are recorded while it unwinds
+     *
+     * @param stopWhen true when the search should stop, or null to always finish
+     */
+    public void stopWhen(BooleanSupplier stopWhen) {
+        this.stopWhen = stopWhen;
+    }
+
+    /**
+     * finds a path to the solution
+     *
+     * @return the sequence from start to end configs, or an empty list if
+     *          there is no solution or the search was stopped
+     * @throws IllegalStateException if the search was started from a board
+     */
+    public List<Configuration> solve() {
+        if (start == null) {
+            throw new IllegalStateException("A search started from a board has no configs, use find()");
+        }
+        return find() ? solution.replay(start) : new ArrayList<>();
+    }
+
+    /**
+     * finds a solution, leaving its moves in {@link #getMoveList()}
+     *
+     * @return true if there is one, false if there is none or the search
+     *          was stopped
+     */
+    public boolean find() {
+        nodes = 0;
+        dead.clear();
+        solution = null;
+        stopped = false;
+        boolean timed = new SolverPhaseEvent().isEnabled();
+        long begin = timed ? System.nanoTime() : 0;
+        boolean solved = board.getPieceCount() > 0 && search(0);
+        if (timed) {
+            SolverPhaseEvent.commit(ENGINE, "search", System.nanoTime() - begin, nodes, nodes, dead.size(),
+                    board.getRows(), board.getCols(), board.getPieceCount());
+        }
+        if (solved) {
+            solution = MoveList.of(board.getRows(), board.getCols(), line, board.getSlotCount() - 1);
+        }
+        return solved;
+    }
+
+    /**
+     * did the last {@link #solve()} give up before it had an answer?
+     *
+     * @return true if it was stopped by {@link #stopWhen(BooleanSupplier)}
+     */
+    public boolean wasStopped() {
+        return stopped;
+    }
+
+    /**
+     * returns the moves of the solution found by the last {@link #solve()}
+     *
+     * @return the moves, or null if there was no solution
+     */
+    public MoveList getMoveList() {
+        return solution;
+    }
+
+    /**
+     * searches the current position. a solution leaves its moves in line
+     * and the board unchanged
+     *
+     * @param depth the number of moves made so far
+     * @return true if the position can be solved
+     */
+    private boolean search(int depth) {
+        nodes++;
+        if (stopWhen != null && nodes % STOP_CHECK_NODES == 0 && stopWhen.getAsBoolean()) {
+            stopped = true;
+        }
+        if (stopped) {
+            return false;
+        }
+        if (board.getPieceCount() == 1) {
+            return true;
+        }
+        if (dead.contains(board)) {
+            return false;
+        }
+        if (nogoods != null && nogoods.isDead(board)) {
+            dead.add(board);
+            return false;
+        }
+        int count = board.generateMoves(generated);
+        int[] buffer = buffer(depth, count);
+        boolean sharing = shared != null && SubpositionCache.covers(board);
+        if (sharing) {
+            int known = shared.get(board);
+            if (known == SubpositionCache.DEAD) {
+                dead.add(board);
+                return false;
+            }
+            // another search solved this position; follow its capture if it is legal here
+            for (int i = 0; known != SubpositionCache.MISSING && i < count; i++) {
+                if (buffer[i] == known) {
+                    board.makeMove(known);
+                    boolean solved = search(depth + 1);
+                    board.unmakeMove(known);
+                    if (stopped) {
+                        return false;
+                    }
+                    if (solved) {
+                        line[depth] = known;
+                        return true;
+                    }
+                }
+            }
+        }
+        if (ordering != MoveOrdering.NATURAL) {
+            order(buffer, scores[depth], count);
+        }
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            board.makeMove(move);
+            boolean solved = search(depth + 1);
+            board.unmakeMove(move);
+            if (stopped) {
+                return false;
+            }
+            if (solved) {
+                line[depth] = move;
+                if (sharing) {
+                    shared.put(board, move);
+                }
+                return true;
+            }
+        }
+        dead.add(board);
+        if (sharing) {
+            shared.put(board, SubpositionCache.DEAD);
+        }
+        if (nogoods != null) {
+            nogoods.record(board);
+        }
+        return false;
+    }
+
+    /**
+     * copies the captures just generated into the buffer of a depth,
+     * growing it and its score buffer if they are too small
+     *
+     * @param depth the depth
+     * @param count the number of captures generated
+     * @return the buffer
+     */
+    private int[] buffer(int depth, int count) {
+        int[] buffer = moves[depth];
+        if (buffer == null || buffer.length < count) {
+            buffer = new int[Math.max(count, buffer == null ? 0 : 2 * buffer.length)];
+            moves[depth] = buffer;
+            if (ordering != MoveOrdering.NATURAL) {
+                scores[depth] = new int[buffer.length];
+            }
+        }
+        System.arraycopy(generated, 0, buffer, 0, count);
+        return buffer;
+    }
+
+    /**
+     * sorts moves by their score, keeping generated order for equal scores
+     *
+     * @param buffer the moves
+     * @param score buffer for the scores
+     * @param count the number of moves
+     */
+    private void order(int[] buffer, int[] score, int count) {
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            int value = ordering.score(board, move);
+            int j = i;
+            while (j > 0 && score[j - 1] > value) {
+                buffer[j] = buffer[j - 1];
+                score[j] = score[j - 1];
+                j--;
+            }
+            buffer[j] = move;
+            score[j] = value;
+        }
+    }
+
+    /** returns the number of positions searched */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** returns the number of positions proven to have no solution */
+    public int getDeadPositions() {
+        return dead.size();
+    }
+}
@@ -0,0 +1,70 @@
+package puzzles.chess.model;
+
+import puzzles.common.Coordinates;
+
+import java.util.List;
+
+/**
+ * what a {@link ChessModel} tells its observers about a change.
+ *
+ * @param message the status message
+ * @param changed the squares whose piece changed
+ * @param wholeBoard true if the whole board may have changed, e.g. after a
+ *                   load, in which case changed is empty
+ * @param safety a capture the background analysis has just judged, or
+ *               null for updates about the board itself
+ * @param generation the {@link ChessModel#getGeneration()} of the config
+ *                   the update is about. an update that reaches an
+ *                   observer after the config has changed again is stale
+ *                   and may name squares the board no longer has
+ *
+ * @author Kristin Yap
+ */
+public record ChessUpdate(String message, List<Coordinates> changed, boolean wholeBoard, MoveSafety safety,
+                          int generation) {
+    /**
+     * an update about the board itself
+     *
+     * @param message the status message
+     * @param changed the squares whose piece changed
+     * @param wholeBoard true if the whole board may have changed
+     * @param generation the generation of the config it is about
+     */
+    public ChessUpdate(String message, List<Coordinates> changed, boolean wholeBoard, int generation) {
+        this(message, changed, wholeBoard, null, generation);
+    }
+
+    /**
+     * an update that only carries a status message
+     *
+     * @param message the status message
+     * @param generation the generation of the config it is about
+     * @return the update
+     */
+    public static ChessUpdate message(String message, int generation) {
+        return new ChessUpdate(message, List.of(), false, generation);
+    }
+
+    /**
+     * an update after which the whole board should be redrawn
+     *
+     * @param message the status message
+     * @param generation the generation of the config it is about
+     * @return the update
+     */
+    public static ChessUpdate wholeBoard(String message, int generation) {
+        return new ChessUpdate(message, List.of(), true, generation);
+    }
+
+    /**
+     * an update carrying a capture the background analysis has judged. the
+     * squares of the capture are the ones that changed
+     *
+     * @param safety the capture and whether it keeps the puzzle solvable
+     * @param generation the generation of the config that was analyzed
+     * @return the update
+     */
+    public static ChessUpdate safety(MoveSafety safety, int generation) {
+        return new ChessUpdate("", List.of(safety.from(), safety.to()), false, safety, generation);
+    }
+}
@@ -0,0 +1,146 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.common.LongHashSet;
+import puzzles.common.LongLongHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * a worker process of the {@link DistributedSolver}. it owns the states
+ * the coordinator routes to it: it remembers the parent of each one, drops states it
+ * has already seen, and expands the new ones into successors grouped by
+ * the worker that owns them.
+ *
+ * @author Kristin Yap
+ */
+public class ChessWorker {
+    /** the number of workers */
+    private final int workers;
+    /** the board states are decoded into */
+    private final ChessBoard board;
+    /** move buffer */
+    private final int[] moves;
+    /** parent of every state this worker owns */
+    private final LongLongHashMap parents = new LongLongHashMap();
+    /** successors already sent during the current layer */
+    private final LongHashSet sent = new LongHashSet();
+    /** successors for each owner */
+    private final WorkerProtocol.KeyBatch[] outgoing;
+
+    /**
+     * creates a worker
+     *
+     * @param workers the number of workers
+     * @param encoding the encoded starting board
+     */
+    private ChessWorker(int workers, String encoding) {
+        this.workers = workers;
+        this.board = ChessBoard.fromEncoding(encoding);
+        this.moves = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        this.outgoing = new WorkerProtocol.KeyBatch[workers];
+        for (int owner = 0; owner < workers; owner++) {
+            outgoing[owner] = new WorkerProtocol.KeyBatch();
+        }
+    }
+
+    /**
+     * answers requests until the coordinator says to quit
+     *
+     * @param in requests from the coordinator
+     * @param out replies to the coordinator
+     * @throws IOException if the connection fails
+     */
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        WorkerProtocol.KeyBatch incoming = new WorkerProtocol.KeyBatch();
+        while (true) {
+            byte type = in.readByte();
+            if (type == WorkerProtocol.STATES) {
+                incoming.clear();
+                incoming.read(in);
+                expand(incoming, out);
+            }
+            else if (type == WorkerProtocol.PARENT) {
+                long key = in.readLong();
+                out.writeLong(parents.get(key, key));
+            }
+            else {
+                return;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * keeps the states that have not been seen before and replies with
+     * their successors
+     *
+     * @param incoming states owned by this worker and their parents
+     * @param out the reply stream
+     * @throws IOException if the connection fails
+     */
+    private void expand(WorkerProtocol.KeyBatch incoming, DataOutputStream out) throws IOException {
+        sent.clear();
+        for (WorkerProtocol.KeyBatch batch : outgoing) {
+            batch.clear();
+        }
+        boolean solved = false;
+        long solvedKey = 0;
+        long solvedParent = 0;
+        int fresh = 0;
+        for (int i = 0; i < incoming.size() && !solved; i++) {
+            long key = incoming.key(i);
+            if (!parents.putIfAbsent(key, incoming.parent(i))) {
+                continue;
+            }
+            fresh++;
+            board.decode(key);
+            int count = board.generateMoves(moves);
+            for (int m = 0; m < count; m++) {
+                board.makeMove(moves[m]);
+                long child = board.key();
+                if (board.getPieceCount() == 1 && !solved) {
+                    solved = true;
+                    solvedKey = child;
+                    solvedParent = key;
+                }
+                if (sent.add(child)) {
+                    outgoing[WorkerProtocol.owner(child, workers)].add(child, key);
+                }
+                board.unmakeMove(moves[m]);
+            }
+        }
+        out.writeBoolean(solved);
+        out.writeLong(solvedKey);
+        out.writeLong(solvedParent);
+        out.writeInt(fresh);
+        for (WorkerProtocol.KeyBatch batch : outgoing) {
+            batch.write(out);
+        }
+    }
+
+    /**
+     * connects to a coordinator and works until told to quit
+     *
+     * @param args the coordinator's host and port
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java ChessWorker host port");
+            return;
+        }
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int workers = in.readInt();
+            new ChessWorker(workers, in.readUTF()).serve(in, out);
+        } catch (IOException ioe) {
+            System.err.println("Worker lost its coordinator: " + ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessConfig;
+
+import java.io.IOException;
+
+/**
+ * compares the move orderings of the depth first search by the number of
+ * positions each one searches before finding the first solution
+ *
+ * @author Kristin Yap
+ */
+public class CompareOrderings {
+    /**
+     * prints one row per puzzle with the node count of every ordering
+     *
+     * @param args the chess files
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java CompareOrderings filename...");
+            return;
+        }
+        StringBuilder header = new StringBuilder("puzzle");
+        long[] totals = new long[MoveOrdering.NAMES.length];
+        for (String name : MoveOrdering.NAMES) {
+            header.append('\t').append(name);
+        }
+        System.out.println(header);
+        for (String filename : args) {
+            try {
+                ChessConfig start = new ChessConfig(filename);
+                StringBuilder row = new StringBuilder(filename);
+                for (int i = 0; i < MoveOrdering.NAMES.length; i++) {
+                    ChessSearch search = new ChessSearch(start, MoveOrdering.named(MoveOrdering.NAMES[i]));
+                    boolean solved = !search.solve().isEmpty();
+                    totals[i] += search.getNodes();
+                    row.append('\t').append(search.getNodes()).append(solved ? "" : "*");
+                }
+                System.out.println(row);
+            } catch (IOException ioe) {
+                System.out.println(filename + ": " + ioe.getMessage());
+            }
+        }
+        StringBuilder total = new StringBuilder("total");
+        for (long nodes : totals) {
+            total.append('\t').append(nodes);
+        }
+        System.out.println(total);
+        System.out.println("* no solution");
+    }
+}
@@ -0,0 +1,296 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.common.solver.Configuration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * breadth first solver for chess that spreads the states over worker JVMs
+ * on this host. every state is owned by one {@link ChessWorker}, chosen by
+ * hashing its exact key. each layer the coordinator hands every worker the
+ * states routed to it, and the worker drops the ones it has seen, expands
+ * the rest and returns their successors grouped by owner. the path is
+ * rebuilt at the end by asking owners for parents.
+ *
+ * @author Kristin Yap
+ */
+public class DistributedSolver {
+    /** how long to wait for workers to connect, in milliseconds */
+    private static final int CONNECT_TIMEOUT = 30_000;
+    /** how often to check that started workers are still running while they connect, in milliseconds */
+    private static final int ALIVE_POLL = 250;
+
+    /** the starting config */
+    private final ChessConfig start;
+    /** the number of workers */
+    private final int workers;
+    /** start worker processes, rather than wait for workers started by hand? */
+    private final boolean spawn;
+    /** the total number of configs */
+    private long totalConfigs;
+    /** the total number of unique configs */
+    private long uniqueConfigs;
+
+    /**
+     * creates a solver that starts its own worker processes
+     *
+     * @param start the starting config
+     * @param workers the number of workers
+     */
+    public DistributedSolver(ChessConfig start, int workers) {
+        this(start, workers, true);
+    }
+
+    /**
+     * creates a solver
+     *
+     * @param start the starting config
+     * @param workers the number of workers
+     * @param spawn true to start worker processes, false to print the port
+     *              and wait for workers started with {@link ChessWorker#main}
+     */
+    public DistributedSolver(ChessConfig start, int workers, boolean spawn) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Need at least one worker");
+        }
+        this.start = start;
+        this.workers = workers;
+        this.spawn = spawn;
+    }
+
+    /**
+     * finds the shortest path to the solution
+     *
+     * @return the sequence from start to end configs, or an empty list if
+     *          there is no solution
+     * @throws IOException if a worker cannot be started or fails
+     */
+    public List<Configuration> solve() throws IOException {
+        ChessBoard board = new ChessBoard(start);
+        if (!board.hasExactKey()) {
+            throw new IllegalArgumentException("Too many pieces for distributed mode: "
+                    + board.getPieceCount());
+        }
+        totalConfigs = 0;
+        uniqueConfigs = 0;
+        if (board.getPieceCount() == 1) {
+            // the start is the only config
+            uniqueConfigs++;
+            return List.of(start);
+        }
+        List<Process> processes = new ArrayList<>();
+        DataInputStream[] in = new DataInputStream[workers];
+        DataOutputStream[] out = new DataOutputStream[workers];
+        List<Socket> sockets = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ALIVE_POLL);
+            if (spawn) {
+                String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+                for (int i = 0; i < workers; i++) {
+                    processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            ChessWorker.class.getName(), server.getInetAddress().getHostAddress(),
+                            String.valueOf(server.getLocalPort()))
+                            .inheritIO()
+                            .start());
+                }
+            }
+            else {
+                System.out.println("Waiting for " + workers + " workers on port " + server.getLocalPort());
+            }
+            for (int i = 0; i < workers; i++) {
+                Socket socket = accept(server, processes);
+                sockets.add(socket);
+                in[i] = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out[i] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out[i].writeInt(workers);
+                out[i].writeUTF(board.encode());
+            }
+            long[] keys = search(board.key(), board.getPieceCount(), in, out);
+            return keys.length == 0 ? new ArrayList<>() : replay(board, keys);
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                if (out[i] != null) {
+                    try {
+                        out[i].writeByte(WorkerProtocol.QUIT);
+                        out[i].flush();
+                    } catch (IOException ignored) {
+                        // the worker is already gone
+                    }
+                }
+            }
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException ie) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * waits for the next worker to connect, giving up as soon as a started
+     * worker process has exited
+     *
+     * @param server the socket workers connect to
+     * @param processes the started worker processes, empty if they are
+     *                  started by hand
+     * @return the connection
+     * @throws IOException if a worker exited or none connected in time
+     */
+    private static Socket accept(ServerSocket server, List<Process> processes) throws IOException {
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT * 1_000_000L;
+        while (true) {
+            try {
+                return server.accept();
+            } catch (SocketTimeoutException ste) {
+                for (Process process : processes) {
+                    if (!process.isAlive()) {
+                        throw new IOException("Worker exited with code " + process.exitValue());
+                    }
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw ste;
+                }
+            }
+        }
+    }
+
+    /**
+     * runs the layers of the search
+     *
+     * @param startKey key of the starting board
+     * @param pieces the number of pieces on the starting board, which is
+     *               the number of states on a solution
+     * @param in replies from each worker
+     * @param out requests to each worker
+     * @return keys from the start to the solution, or an empty array
+     * @throws IOException if a worker fails
+     */
+    private long[] search(long startKey, int pieces, DataInputStream[] in, DataOutputStream[] out)
+            throws IOException {
+        WorkerProtocol.KeyBatch[] layer = new WorkerProtocol.KeyBatch[workers];
+        WorkerProtocol.KeyBatch[] next = new WorkerProtocol.KeyBatch[workers];
+        for (int i = 0; i < workers; i++) {
+            layer[i] = new WorkerProtocol.KeyBatch();
+            next[i] = new WorkerProtocol.KeyBatch();
+        }
+        layer[WorkerProtocol.owner(startKey, workers)].add(startKey, startKey);
+        while (true) {
+            for (int i = 0; i < workers; i++) {
+                out[i].writeByte(WorkerProtocol.STATES);
+                layer[i].write(out[i]);
+                out[i].flush();
+            }
+            boolean solved = false;
+            long solvedKey = 0;
+            long solvedParent = 0;
+            int fresh = 0;
+            for (int i = 0; i < workers; i++) {
+                if (in[i].readBoolean() && !solved) {
+                    solved = true;
+                    solvedKey = in[i].readLong();
+                    solvedParent = in[i].readLong();
+                }
+                else {
+                    in[i].readLong();
+                    in[i].readLong();
+                }
+                fresh += in[i].readInt();
+                for (int owner = 0; owner < workers; owner++) {
+                    int before = next[owner].size();
+                    next[owner].read(in[i]);
+                    totalConfigs += next[owner].size() - before;
+                }
+            }
+            uniqueConfigs += fresh;
+            if (solved) {
+                // every capture removes a piece, so the path is filled in from its end
+                long[] keys = new long[pieces];
+                int step = pieces - 1;
+                keys[step] = solvedKey;
+                long key = solvedParent;
+                while (true) {
+                    keys[--step] = key;
+                    DataOutputStream owner = out[WorkerProtocol.owner(key, workers)];
+                    owner.writeByte(WorkerProtocol.PARENT);
+                    owner.writeLong(key);
+                    owner.flush();
+                    long parent = in[WorkerProtocol.owner(key, workers)].readLong();
+                    if (parent == key) {
+                        break;
+                    }
+                    key = parent;
+                }
+                return keys;
+            }
+            if (fresh == 0) {
+                return new long[0];
+            }
+            WorkerProtocol.KeyBatch[] swap = layer;
+            layer = next;
+            next = swap;
+            for (WorkerProtocol.KeyBatch batch : next) {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * turns the keys of a solution into configs by finding the capture
+     * between each pair of states
+     *
+     * @param board a board of the puzzle
+     * @param keys keys from the start to the solution
+     * @return the sequence from start to end configs
+     */
+    private List<Configuration> replay(ChessBoard board, long[] keys) {
+        List<Configuration> path = new ArrayList<>();
+        ChessConfig current = start;
+        path.add(current);
+        int[] moves = new int[ChessBoard.maxMoves(board.getSlotCount())];
+        for (int step = 1; step < keys.length; step++) {
+            board.decode(keys[step - 1]);
+            int count = board.generateMoves(moves);
+            for (int m = 0; m < count; m++) {
+                board.makeMove(moves[m]);
+                boolean found = board.key() == keys[step];
+                board.unmakeMove(moves[m]);
+                if (found) {
+                    current = new ChessConfig(current, board.coordinates(ChessBoard.from(moves[m])),
+                            board.coordinates(ChessBoard.to(moves[m])));
+                    path.add(current);
+                    break;
+                }
+            }
+        }
+        return path;
+    }
+
+    /** returns the total number of configs */
+    public long getTotalConfigs() {
+        return totalConfigs;
+    }
+
+    /** returns the number of unique configs */
+    public long getUniqueConfigs() {
+        return uniqueConfigs;
+    }
+}
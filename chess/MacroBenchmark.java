@@ -0,0 +1,576 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.SolveCache;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * times whole solves over a workload of puzzles, the way {@link Chess}
+ * runs them, and fails when they get slower than a stored baseline. the
+ * workload is the chess files given plus any number of random puzzles made
+ * from a seed, so the same corpus can be rebuilt on another machine. the
+ * workload is run once to warm up and then a few times more; each solve
+ * records its wall time, configs per second, peak heap, bytes allocated
+ * and time spent collecting garbage. the measurements are written as csv
+ * and json, and a csv from an earlier run can be given as the baseline:
+ * the median of each metric is compared puzzle by puzzle and over the
+ * whole workload, and any metric worse than its threshold fails the run.
+ *
+ * @author Kristin Yap
+ */
+public class MacroBenchmark {
+    /** default percentage a metric may get worse by */
+    public static final double DEFAULT_THRESHOLD = 10.0;
+    /** puzzles solved faster than this in the baseline are too noisy to compare one by one */
+    private static final double NOISE_MILLIS = 10.0;
+    /** the pieces random puzzles are made from */
+    private static final String RANDOM_PIECES = "BKNPQR";
+    /** columns of the csv, in order */
+    private static final String CSV_HEADER =
+            "puzzle,run,solvable,wall_ms,configs,configs_per_sec,peak_heap_mb,allocated_mb,gc_count,gc_ms";
+
+    /**
+     * the measurements of one solve
+     *
+     * @param puzzle the puzzle's name
+     * @param run which run of the workload, from 1
+     * @param solvable did it have a solution?
+     * @param millis wall time
+     * @param configs configs the solver generated
+     * @param peakHeap most heap in use, in megabytes
+     * @param allocated heap allocated by the threads running the solve, in megabytes
+     * @param gcCount garbage collections
+     * @param gcMillis time the collectors report, in milliseconds
+     */
+    public record Measurement(String puzzle, int run, boolean solvable, double millis, long configs,
+                              double peakHeap, double allocated, long gcCount, double gcMillis) {
+        /** returns configs per second of wall time */
+        public double configsPerSecond() {
+            return millis == 0 ? 0 : configs * 1000.0 / millis;
+        }
+
+        /** returns the measurement as a csv row */
+        String toCsv() {
+            return String.format("%s,%d,%b,%.3f,%d,%.0f,%.1f,%.1f,%d,%.1f", puzzle, run, solvable, millis,
+                    configs, configsPerSecond(), peakHeap, allocated, gcCount, gcMillis);
+        }
+
+        /** returns the measurement as a json object */
+        String toJson() {
+            return String.format("{\"puzzle\": \"%s\", \"run\": %d, \"solvable\": %b, \"wall_ms\": %.3f, "
+                            + "\"configs\": %d, \"configs_per_sec\": %.0f, \"peak_heap_mb\": %.1f, "
+                            + "\"allocated_mb\": %.1f, \"gc_count\": %d, \"gc_ms\": %.1f}",
+                    puzzle.replace("\\", "\\\\").replace("\"", "\\\""), run, solvable, millis, configs,
+                    configsPerSecond(), peakHeap, allocated, gcCount, gcMillis);
+        }
+
+        /**
+         * reads a row written by {@link #toCsv()}
+         *
+         * @param line the row
+         * @return the measurement
+         * @throws IllegalArgumentException if the row is malformed
+         */
+        static Measurement fromCsv(String line) {
+            String[] fields = line.split(",");
+            if (fields.length != CSV_HEADER.split(",").length) {
+                throw new IllegalArgumentException("Bad benchmark row: " + line);
+            }
+            try {
+                return new Measurement(fields[0], Integer.parseInt(fields[1]), Boolean.parseBoolean(fields[2]),
+                        Double.parseDouble(fields[3]), Long.parseLong(fields[4]), Double.parseDouble(fields[6]),
+                        Double.parseDouble(fields[7]), Long.parseLong(fields[8]), Double.parseDouble(fields[9]));
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Bad benchmark row: " + line);
+            }
+        }
+    }
+
+    /** the metrics compared with the baseline */
+    public enum Metric {
+        WALL_MS("wall_ms", true, Measurement::millis),
+        CONFIGS_PER_SEC("configs_per_sec", false, Measurement::configsPerSecond),
+        PEAK_HEAP_MB("peak_heap_mb", true, Measurement::peakHeap),
+        ALLOCATED_MB("allocated_mb", true, Measurement::allocated),
+        GC_MS("gc_ms", true, Measurement::gcMillis);
+
+        /** the metric's column */
+        private final String column;
+        /** is a larger value a regression? */
+        private final boolean higherIsWorse;
+        /** reads the metric from a measurement */
+        private final ToDoubleFunction<Measurement> value;
+
+        /**
+         * creates a metric
+         *
+         * @param column the metric's column
+         * @param higherIsWorse is a larger value a regression?
+         * @param value reads the metric from a measurement
+         */
+        Metric(String column, boolean higherIsWorse, ToDoubleFunction<Measurement> value) {
+            this.column = column;
+            this.higherIsWorse = higherIsWorse;
+            this.value = value;
+        }
+
+        /**
+         * the metric named by its column
+         *
+         * @param column e.g. "wall_ms"
+         * @return the metric
+         * @throws IllegalArgumentException if there is no such metric
+         */
+        public static Metric named(String column) {
+            for (Metric metric : values()) {
+                if (metric.column.equals(column)) {
+                    return metric;
+                }
+            }
+            throw new IllegalArgumentException("Unknown metric: " + column);
+        }
+
+        /**
+         * how much worse a value is than the baseline's
+         *
+         * @param base the baseline's value
+         * @param current this run's value
+         * @return the change in percent, positive if it got worse
+         */
+        double worsening(double base, double current) {
+            double change = 100.0 * (current - base) / base;
+            return higherIsWorse ? change : -change;
+        }
+    }
+
+    /**
+     * makes a random puzzle file
+     *
+     * @param random the source of squares and pieces
+     * @param rows board rows
+     * @param cols board cols
+     * @param pieces the number of pieces, no more than the squares
+     * @return the lines of the puzzle
+     */
+    static List<String> randomPuzzle(Random random, int rows, int cols, int pieces) {
+        char[] cells = new char[rows * cols];
+        Arrays.fill(cells, '.');
+        for (int placed = 0; placed < Math.min(pieces, cells.length); ) {
+            int square = random.nextInt(cells.length);
+            if (cells[square] == '.') {
+                cells[square] = RANDOM_PIECES.charAt(random.nextInt(RANDOM_PIECES.length()));
+                placed++;
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(rows + " " + cols);
+        for (int row = 0; row < rows; row++) {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < cols; col++) {
+                line.append(col == 0 ? "" : " ").append(cells[row * cols + col]);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * solves one puzzle and measures it. the solve cache is not used, so
+     * every run does the whole search
+     *
+     * @param name the puzzle's name
+     * @param filename the chess file
+     * @param strategy the engine, or null to let {@link StrategySelector} pick
+     * @param run which run of the workload
+     * @return the measurement
+     * @throws IOException if the file cannot be read
+     */
+    static Measurement measure(String name, String filename, SolveStrategy strategy, int run) throws IOException {
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heap.add(pool);
+            }
+        }
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long begin = System.nanoTime();
+        ChessConfig start = new ChessConfig(filename);
+        SolveCache.Result result = strategy == null ? StrategySelector.solve(start) : strategy.solve(start);
+        long nanos = System.nanoTime() - begin;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return new Measurement(name, run, result.solvable(), nanos / 1e6, result.totalConfigs(), peak / 1048576.0,
+                allocatedSince(allocatedBefore) / 1048576.0, gcCount() - gcCountBefore,
+                gcMillis() - gcMillisBefore);
+    }
+
+    /** returns heap bytes allocated so far by each live thread, by id, or none if the jvm cannot tell */
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> allocated = new HashMap<>();
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                // -1 for threads that ended since their ids were taken
+                if (bytes[i] >= 0) {
+                    allocated.put(ids[i], bytes[i]);
+                }
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * the heap bytes allocated since a snapshot by the threads alive now:
+     * the one running the solve and any workers it used. each thread is
+     * counted from its own earlier count, or from 0 if it started since, so
+     * a thread that ended in between is left out instead of taking its
+     * bytes off the total
+     *
+     * @param before the snapshot, from {@link #allocatedBytes()}
+     * @return the bytes allocated
+     */
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : allocatedBytes().entrySet()) {
+            total += Math.max(0, thread.getValue() - before.getOrDefault(thread.getKey(), 0L));
+        }
+        return total;
+    }
+
+    /** returns garbage collections so far */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /** returns milliseconds spent collecting garbage so far */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * the median of a metric for each puzzle, over every run
+     *
+     * @param measurements the measurements
+     * @param metric the metric
+     * @return the medians by puzzle, in workload order
+     */
+    static Map<String, Double> medians(List<Measurement> measurements, Metric metric) {
+        Map<String, List<Double>> values = new LinkedHashMap<>();
+        for (Measurement measurement : measurements) {
+            values.computeIfAbsent(measurement.puzzle(), puzzle -> new ArrayList<>())
+                    .add(metric.value.applyAsDouble(measurement));
+        }
+        Map<String, Double> medians = new LinkedHashMap<>();
+        values.forEach((puzzle, list) -> {
+            double[] sorted = list.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            int middle = sorted.length / 2;
+            medians.put(puzzle, sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2);
+        });
+        return medians;
+    }
+
+    /**
+     * compares measurements with a baseline. each metric is compared over
+     * the puzzles both share, totalled, and puzzle by puzzle for those
+     * that took at least {@link #NOISE_MILLIS} in the baseline
+     *
+     * @param baseline the baseline's measurements
+     * @param current this run's measurements
+     * @param thresholds the percentage each metric may get worse by
+     * @return a line for each regression, empty if there are none
+     */
+    static List<String> regressions(List<Measurement> baseline, List<Measurement> current,
+                                    Map<Metric, Double> thresholds) {
+        List<String> found = new ArrayList<>();
+        Map<String, Double> baseWall = medians(baseline, Metric.WALL_MS);
+        for (Map.Entry<Metric, Double> entry : thresholds.entrySet()) {
+            Metric metric = entry.getKey();
+            Map<String, Double> base = medians(baseline, metric);
+            Map<String, Double> now = medians(current, metric);
+            double baseTotal = 0;
+            double nowTotal = 0;
+            for (Map.Entry<String, Double> puzzle : now.entrySet()) {
+                Double was = base.get(puzzle.getKey());
+                if (was == null) {
+                    continue;
+                }
+                baseTotal += was;
+                nowTotal += puzzle.getValue();
+                if (was > 0 && baseWall.get(puzzle.getKey()) >= NOISE_MILLIS
+                        && metric.worsening(was, puzzle.getValue()) > entry.getValue()) {
+                    found.add(regression(puzzle.getKey(), metric, was, puzzle.getValue()));
+                }
+            }
+            if (baseTotal > 0 && metric.worsening(baseTotal, nowTotal) > entry.getValue()) {
+                found.add(regression("total", metric, baseTotal, nowTotal));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * describes a regression
+     *
+     * @param puzzle the puzzle, or "total"
+     * @param metric the metric
+     * @param base the baseline's value
+     * @param current this run's value
+     * @return the description
+     */
+    private static String regression(String puzzle, Metric metric, double base, double current) {
+        return String.format("%s %s %.1f -> %.1f (%+.1f%%)", puzzle, metric.column, base, current,
+                100.0 * (current - base) / base);
+    }
+
+    /**
+     * writes measurements as csv
+     *
+     * @param path the file
+     * @param measurements the measurements
+     * @throws IOException if the file cannot be written
+     */
+    static void writeCsv(Path path, List<Measurement> measurements) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println(CSV_HEADER);
+            for (Measurement measurement : measurements) {
+                out.println(measurement.toCsv());
+            }
+        }
+    }
+
+    /**
+     * reads measurements written by {@link #writeCsv(Path, List)}
+     *
+     * @param path the file
+     * @return the measurements
+     * @throws IOException if the file cannot be read
+     */
+    static List<Measurement> readCsv(Path path) throws IOException {
+        List<Measurement> measurements = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (!line.isBlank() && !line.equals(CSV_HEADER)) {
+                measurements.add(Measurement.fromCsv(line));
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * writes measurements as json, with the settings of the run
+     *
+     * @param path the file
+     * @param strategy the engine's name
+     * @param runs the number of measured runs
+     * @param measurements the measurements
+     * @throws IOException if the file cannot be written
+     */
+    static void writeJson(Path path, String strategy, int runs, List<Measurement> measurements) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("{");
+            out.println("  \"strategy\": \"" + strategy + "\",");
+            out.println("  \"runs\": " + runs + ",");
+            out.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            out.println("  \"max_heap_mb\": " + Runtime.getRuntime().maxMemory() / 1048576 + ",");
+            out.println("  \"measurements\": [");
+            for (int i = 0; i < measurements.size(); i++) {
+                out.println("    " + measurements.get(i).toJson() + (i + 1 < measurements.size() ? "," : ""));
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /**
+     * runs the benchmark
+     *
+     * @param args chess files, and options: --random=n puzzles made from
+     *             --seed=s (default 1) of --size=rxc (default 5x5) with
+     *             --pieces=p (default 8); --strategy=auto, bfs, ranked, dfs
+     *             or parallel; --warmup=n and --runs=n rounds (default 1 and
+     *             3); --csv=file and --json=file to write the measurements;
+     *             --baseline=file to compare with an earlier csv; and
+     *             --threshold=percent, or --threshold=metric:percent for
+     *             one metric, the most a metric may get worse by
+     */
+    public static void main(String[] args) {
+        List<String[]> workload = new ArrayList<>();
+        int random = 0;
+        long seed = 1;
+        int rows = 5;
+        int cols = 5;
+        int pieces = 8;
+        String strategyName = "auto";
+        int warmup = 1;
+        int runs = 3;
+        Path csv = null;
+        Path json = null;
+        Path baseline = null;
+        Map<Metric, Double> thresholds = new LinkedHashMap<>();
+        for (Metric metric : Metric.values()) {
+            thresholds.put(metric, DEFAULT_THRESHOLD);
+        }
+        try {
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--random=")) {
+                    random = Integer.parseInt(value);
+                }
+                else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                }
+                else if (arg.startsWith("--size=")) {
+                    rows = Integer.parseInt(value.substring(0, value.indexOf('x')));
+                    cols = Integer.parseInt(value.substring(value.indexOf('x') + 1));
+                }
+                else if (arg.startsWith("--pieces=")) {
+                    pieces = Integer.parseInt(value);
+                }
+                else if (arg.startsWith("--strategy=")) {
+                    strategyName = value;
+                }
+                else if (arg.startsWith("--warmup=")) {
+                    warmup = Integer.parseInt(value);
+                }
+                else if (arg.startsWith("--runs=")) {
+                    runs = Integer.parseInt(value);
+                }
+                else if (arg.startsWith("--csv=")) {
+                    csv = Path.of(value);
+                }
+                else if (arg.startsWith("--json=")) {
+                    json = Path.of(value);
+                }
+                else if (arg.startsWith("--baseline=")) {
+                    baseline = Path.of(value);
+                }
+                else if (arg.startsWith("--threshold=") && value.contains(":")) {
+                    thresholds.put(Metric.named(value.substring(0, value.indexOf(':'))),
+                            Double.parseDouble(value.substring(value.indexOf(':') + 1)));
+                }
+                else if (arg.startsWith("--threshold=")) {
+                    double percent = Double.parseDouble(value);
+                    thresholds.replaceAll((metric, old) -> percent);
+                }
+                else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+                else {
+                    workload.add(new String[]{arg, arg});
+                }
+            }
+            if (runs < 1 || warmup < 0 || random < 0 || rows < 1 || cols < 1 || pieces < 1) {
+                throw new IllegalArgumentException("Counts must be positive");
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java MacroBenchmark [--random=n [--seed=s] [--size=rxc] [--pieces=p]]"
+                    + " [--strategy=auto|bfs|ranked|dfs|parallel] [--warmup=n] [--runs=n] [--csv=file] [--json=file]"
+                    + " [--baseline=file [--threshold=[metric:]percent]...] filename...");
+            return;
+        }
+        SolveStrategy strategy = switch (strategyName) {
+            case "bfs" -> SolveStrategy.BREADTH_FIRST;
+            case "ranked" -> SolveStrategy.RANKED_BREADTH_FIRST;
+            case "dfs" -> SolveStrategy.depthFirst(MoveOrdering.LEAST_MOBILE);
+            case "parallel" -> SolveStrategy.parallel(ParallelChessSearch.DEFAULT_TABLE_SIZE);
+            default -> null;
+        };
+        try {
+            Random source = new Random(seed);
+            for (int i = 0; i < random; i++) {
+                Path file = Files.createTempFile("chess-bench-", ".txt");
+                file.toFile().deleteOnExit();
+                Files.write(file, randomPuzzle(source, rows, cols, pieces));
+                workload.add(new String[]{String.format("random-%d-%dx%d-%d-%d", seed, rows, cols, pieces, i),
+                        file.toString()});
+            }
+            if (workload.isEmpty()) {
+                System.out.println("Nothing to run");
+                return;
+            }
+            List<Measurement> measurements = new ArrayList<>();
+            for (int run = 1 - warmup; run <= runs; run++) {
+                double total = 0;
+                for (String[] puzzle : workload) {
+                    Measurement measurement = measure(puzzle[0], puzzle[1], strategy, run);
+                    total += measurement.millis();
+                    if (run > 0) {
+                        measurements.add(measurement);
+                    }
+                }
+                System.out.printf("%s %d: %.1f ms%n", run > 0 ? "Run" : "Warmup", run > 0 ? run : run + warmup,
+                        total);
+            }
+            System.out.println(CSV_HEADER.replace(",run", "").replace(',', '\t') + "\t(medians)");
+            Map<Metric, Map<String, Double>> medians = new LinkedHashMap<>();
+            for (Metric metric : Metric.values()) {
+                medians.put(metric, medians(measurements, metric));
+            }
+            Map<String, Double> configs = new LinkedHashMap<>();
+            Map<String, Boolean> solvable = new LinkedHashMap<>();
+            Map<String, Long> gcCount = new LinkedHashMap<>();
+            for (Measurement measurement : measurements) {
+                configs.put(measurement.puzzle(), (double) measurement.configs());
+                solvable.put(measurement.puzzle(), measurement.solvable());
+                gcCount.merge(measurement.puzzle(), measurement.gcCount(), Long::sum);
+            }
+            for (String puzzle : configs.keySet()) {
+                System.out.printf("%s\t%b\t%.3f\t%.0f\t%.0f\t%.1f\t%.1f\t%d\t%.1f%n", puzzle, solvable.get(puzzle),
+                        medians.get(Metric.WALL_MS).get(puzzle), configs.get(puzzle),
+                        medians.get(Metric.CONFIGS_PER_SEC).get(puzzle), medians.get(Metric.PEAK_HEAP_MB).get(puzzle),
+                        medians.get(Metric.ALLOCATED_MB).get(puzzle), gcCount.get(puzzle) / runs,
+                        medians.get(Metric.GC_MS).get(puzzle));
+            }
+            if (csv != null) {
+                writeCsv(csv, measurements);
+            }
+            if (json != null) {
+                writeJson(json, strategy == null ? "auto" : strategy.name(), runs, measurements);
+            }
+            if (baseline != null) {
+                List<String> found = regressions(readCsv(baseline), measurements, thresholds);
+                for (String line : found) {
+                    System.out.println("Regression: " + line);
+                }
+                if (!found.isEmpty()) {
+                    System.exit(1);
+                }
+                System.out.println("No regressions against " + baseline);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package puzzles.chess.model;
+
+import puzzles.common.Coordinates;
+import puzzles.common.solver.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * a solution stored as its captures instead of its boards. each capture is
+ * the square of the moving piece followed by the square it captures on, in
+ * row-major order, one byte per square on boards of up to 256 squares and
+ * two bytes per square on larger ones. boards are rebuilt on demand by
+ * replaying the captures from the starting config.
+ *
+ * @author Kristin Yap
+ */
+public class MoveList {
+    /** board rows */
+    private final int rows;
+    /** board cols */
+    private final int cols;
+    /** the encoded captures */
+    private final byte[] bytes;
+
+    /**
+     * creates a move list from encoded captures
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param bytes captures from {@link #toBytes()}
+     * @throws IllegalArgumentException if the bytes do not hold whole captures
+     */
+    public MoveList(int rows, int cols, byte[] bytes) {
+        if (bytes.length % (2 * squareBytes(rows, cols)) != 0) {
+            throw new IllegalArgumentException("Truncated move list");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.bytes = bytes.clone();
+    }
+
+    /**
+     * creates a move list from moves encoded by {@link ChessBoard}
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param moves the encoded moves
+     * @param count the number of moves to use
+     * @return the move list
+     */
+    public static MoveList of(int rows, int cols, int[] moves, int count) {
+        int width = squareBytes(rows, cols);
+        byte[] bytes = new byte[count * 2 * width];
+        for (int i = 0; i < count; i++) {
+            put(bytes, (2 * i) * width, width, ChessBoard.from(moves[i]));
+            put(bytes, (2 * i + 1) * width, width, ChessBoard.to(moves[i]));
+        }
+        return new MoveList(rows, cols, bytes);
+    }
+
+    /**
+     * creates a move list from a sequence of configs, finding the capture
+     * between each pair
+     *
+     * @param path the sequence from start to end configs, may be empty
+     * @return the move list
+     * @throws IllegalArgumentException if two configs are not one capture apart
+     */
+    public static MoveList of(List<? extends Configuration> path) {
+        if (path.isEmpty()) {
+            return new MoveList(0, 0, new byte[0]);
+        }
+        ChessConfig start = (ChessConfig) path.get(0);
+        ChessBoard board = new ChessBoard(start);
+        int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        int[] moves = new int[path.size() - 1];
+        for (int step = 1; step < path.size(); step++) {
+            ChessConfig next = (ChessConfig) path.get(step);
+            int count = board.generateMoves(buffer);
+            int found = -1;
+            for (int i = 0; i < count && found < 0; i++) {
+                board.makeMove(buffer[i]);
+                if (matches(board, next)) {
+                    found = buffer[i];
+                }
+                board.unmakeMove(buffer[i]);
+            }
+            if (found < 0) {
+                throw new IllegalArgumentException("Step " + step + " is not a capture");
+            }
+            moves[step - 1] = found;
+            board.makeMove(found);
+        }
+        return of(start.getRows(), start.getCols(), moves, moves.length);
+    }
+
+    /**
+     * does a search board hold the same pieces as a config?
+     *
+     * @param board the search board
+     * @param config the config
+     * @return true if every square matches
+     */
+    private static boolean matches(ChessBoard board, ChessConfig config) {
+        for (int square = 0; square < board.getRows() * board.getCols(); square++) {
+            if (board.getCell(square) != config.getCell(square / board.getCols(), square % board.getCols())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * bytes used by each square on a board
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @return 1 for boards of up to 256 squares, otherwise 2
+     */
+    private static int squareBytes(int rows, int cols) {
+        return rows * cols <= 256 ? 1 : 2;
+    }
+
+    /**
+     * writes a square
+     *
+     * @param bytes the destination
+     * @param offset where to write
+     * @param width bytes per square
+     * @param square the square
+     */
+    private static void put(byte[] bytes, int offset, int width, int square) {
+        if (width == 2) {
+            bytes[offset++] = (byte) (square >>> 8);
+        }
+        bytes[offset] = (byte) square;
+    }
+
+    /**
+     * reads a square
+     *
+     * @param offset where to read
+     * @return the square
+     */
+    private int get(int offset) {
+        if (squareBytes(rows, cols) == 2) {
+            return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+        }
+        return bytes[offset] & 0xFF;
+    }
+
+    /** returns the number of captures */
+    public int size() {
+        return bytes.length / (bytes.length == 0 ? 1 : 2 * squareBytes(rows, cols));
+    }
+
+    /**
+     * the first few captures, e.g. the next move for a hint
+     *
+     * @param count the number of captures to keep
+     * @return a move list of at most that many captures
+     */
+    public MoveList prefix(int count) {
+        int length = Math.min(bytes.length, count * 2 * squareBytes(rows, cols));
+        return new MoveList(rows, cols, Arrays.copyOf(bytes, length));
+    }
+
+    /**
+     * the square of the piece that moves in a capture
+     *
+     * @param index the capture
+     * @return its starting coordinates
+     */
+    public Coordinates from(int index) {
+        int square = get(2 * index * squareBytes(rows, cols));
+        return new Coordinates(square / cols, square % cols);
+    }
+
+    /**
+     * the square captured on in a capture
+     *
+     * @param index the capture
+     * @return the coordinates of the captured piece
+     */
+    public Coordinates to(int index) {
+        int square = get((2 * index + 1) * squareBytes(rows, cols));
+        return new Coordinates(square / cols, square % cols);
+    }
+
+    /**
+     * rebuilds the board after a number of captures
+     *
+     * @param start the starting config the captures were made from
+     * @param steps the number of captures to apply
+     * @return the config after those captures
+     */
+    public ChessConfig boardAt(ChessConfig start, int steps) {
+        ChessConfig current = start;
+        for (int i = 0; i < steps; i++) {
+            current = new ChessConfig(current, from(i), to(i));
+        }
+        return current;
+    }
+
+    /**
+     * rebuilds every board of the solution
+     *
+     * @param start the starting config the captures were made from
+     * @return the sequence from start to end configs
+     */
+    public List<Configuration> replay(ChessConfig start) {
+        List<Configuration> path = new ArrayList<>(size() + 1);
+        ChessConfig current = start;
+        path.add(current);
+        for (int i = 0; i < size(); i++) {
+            current = new ChessConfig(current, from(i), to(i));
+            path.add(current);
+        }
+        return path;
+    }
+
+    /** returns the encoded captures */
+    public byte[] toBytes() {
+        return bytes.clone();
+    }
+
+    /** returns the encoded captures as base64 text */
+    public String toBase64() {
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * reads captures written by {@link #toBase64()}
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param text the base64 text
+     * @return the move list
+     */
+    public static MoveList fromBase64(int rows, int cols, String text) {
+        return new MoveList(rows, cols, Base64.getDecoder().decode(text));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MoveList list && list.rows == rows && list.cols == cols
+                && Arrays.equals(list.bytes, bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    /**
+     * the captures as coordinates, e.g. "(1,1)x(0,2) (1,0)x(0,2)"
+     *
+     * @return the captures
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(from(i)).append('x').append(to(i));
+        }
+        return result.toString();
+    }
+}
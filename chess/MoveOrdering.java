@@ -0,0 +1,61 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+
+/**
+ * decides which captures the depth first search tries first. moves with a
+ * lower score are tried first and moves with equal scores keep the order
+ * they were generated in.
+ *
+ * @author Kristin Yap
+ */
+@FunctionalInterface
+public interface MoveOrdering {
+    /**
+     * scores a capture. the board may be changed while scoring but must be
+     * left as it was
+     *
+     * @param board the current position
+     * @param move an encoded move
+     * @return the score, lower is tried sooner
+     */
+    int score(ChessBoard board, int move);
+
+    /** generation order: pieces in row-major order, each in its own direction order */
+    MoveOrdering NATURAL = (board, move) -> 0;
+
+    /** capture with the piece that has the fewest captures available first */
+    MoveOrdering LEAST_MOBILE = (board, move) -> board.mobility(ChessBoard.from(move));
+
+    /** avoid capturing bishops, queens, rooks and other sliding pieces since they reach the most squares */
+    MoveOrdering KEEP_LONG_RANGE = (board, move) ->
+            board.isLongRange(ChessBoard.captured(move)) ? 1 : 0;
+
+    /** avoid captures that leave pieces no other piece can reach */
+    MoveOrdering AVOID_ISOLATION = (board, move) -> {
+        board.makeMove(move);
+        int isolated = board.isolatedPieces();
+        board.unmakeMove(move);
+        return isolated;
+    };
+
+    /** names of the built in orderings */
+    String[] NAMES = {"natural", "least-mobile", "keep-long-range", "avoid-isolation"};
+
+    /**
+     * looks up a built in ordering by name
+     *
+     * @param name natural, least-mobile, keep-long-range or avoid-isolation
+     * @return the ordering
+     * @throws IllegalArgumentException if there is no ordering with that name
+     */
+    static MoveOrdering named(String name) {
+        return switch (name) {
+            case "natural" -> NATURAL;
+            case "least-mobile" -> LEAST_MOBILE;
+            case "keep-long-range" -> KEEP_LONG_RANGE;
+            case "avoid-isolation" -> AVOID_ISOLATION;
+            default -> throw new IllegalArgumentException("Unknown move ordering: " + name);
+        };
+    }
+}
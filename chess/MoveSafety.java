@@ -0,0 +1,15 @@
+package puzzles.chess.model;
+
+import puzzles.common.Coordinates;
+
+/**
+ * what the background analysis of a {@link ChessModel} found out about one
+ * of the captures the player can make
+ *
+ * @param from the square of the capturing piece
+ * @param to the square of the captured piece
+ * @param solvable can the puzzle still be solved after the capture?
+ *
+ * @author Kristin Yap
+ */
+public record MoveSafety(Coordinates from, Coordinates to, boolean solvable) {}
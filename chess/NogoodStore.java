@@ -0,0 +1,200 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * positions proven to have no solution, kept across runs. each position is
+ * appended to a text file as its {@link ChessBoard#encode()} line when it is
+ * recorded, and the file is read back when the store is opened. lookups go
+ * through a bloom filter on {@link ChessBoard#hash()} first, so most boards
+ * are ruled out without building their encoding, then through the exact set.
+ *
+ * @author Kristin Yap
+ */
+public class NogoodStore implements Closeable {
+    /** bits in the bloom filter for each position */
+    private static final int BITS_PER_ENTRY = 16;
+    /** the smallest bloom filter, in bits */
+    private static final int MIN_BITS = 1 << 12;
+
+    /** the file positions are appended to */
+    private final BufferedWriter out;
+    /** encodings of every dead position */
+    private final Set<String> positions = new HashSet<>();
+    /** the bloom filter */
+    private long[] bloom;
+    /** lookups made since the store was opened */
+    private long lookups;
+    /** lookups that found a dead position */
+    private long hits;
+
+    /**
+     * opens a store, creating the file if it does not exist
+     *
+     * @param file the store file
+     * @throws IOException if the file cannot be read or opened for writing
+     */
+    public NogoodStore(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    // a crash can leave a torn last line behind
+                    if (isEncoding(line)) {
+                        positions.add(line);
+                    }
+                }
+            }
+        }
+        rebuildBloom();
+        out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * checks that a line is a whole encoded position
+     *
+     * @param line the line
+     * @return true if the line has a board header and the right number of cells
+     */
+    private static boolean isEncoding(String line) {
+        int x = line.indexOf('x');
+        int colon = line.indexOf(':');
+        if (x < 1 || colon < x + 2) {
+            return false;
+        }
+        try {
+            int rows = Integer.parseInt(line.substring(0, x));
+            int cols = Integer.parseInt(line.substring(x + 1, colon));
+            // puzzles with their own pieces have the definitions after a bar
+            int end = line.indexOf('|') < 0 ? line.length() : line.indexOf('|');
+            return end - colon - 1 == rows * cols;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * is the position known to have no solution?
+     *
+     * @param board the position
+     * @return true if the position was recorded as dead
+     */
+    public boolean isDead(ChessBoard board) {
+        lookups++;
+        if (!mightContain(board.hash())) {
+            return false;
+        }
+        boolean dead = positions.contains(board.encode());
+        if (dead) {
+            hits++;
+        }
+        return dead;
+    }
+
+    /**
+     * records a position that has no solution
+     *
+     * @param board the position
+     * @throws UncheckedIOException if the position cannot be appended to the file
+     */
+    public void record(ChessBoard board) {
+        String encoding = board.encode();
+        if (positions.add(encoding)) {
+            try {
+                out.write(encoding);
+                out.newLine();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            if ((long) positions.size() * BITS_PER_ENTRY > (long) bloom.length * Long.SIZE) {
+                rebuildBloom();
+            }
+            else {
+                addToBloom(board.hash());
+            }
+        }
+    }
+
+    /** sizes the bloom filter for the positions in the store and refills it */
+    private void rebuildBloom() {
+        long bits = MIN_BITS;
+        while (bits < (long) positions.size() * BITS_PER_ENTRY * 2) {
+            bits <<= 1;
+        }
+        bloom = new long[(int) (bits / Long.SIZE)];
+        for (String encoding : positions) {
+            addToBloom(ChessBoard.hashOf(encoding));
+        }
+    }
+
+    /**
+     * sets the bloom filter bits of a hash
+     *
+     * @param hash the hash
+     */
+    private void addToBloom(long hash) {
+        long mask = (long) bloom.length * Long.SIZE - 1;
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < 3; i++) {
+            long bit = (hash + i * step) & mask;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * checks the bloom filter bits of a hash
+     *
+     * @param hash the hash
+     * @return false if the hash was never added, true if it may have been
+     */
+    private boolean mightContain(long hash) {
+        long mask = (long) bloom.length * Long.SIZE - 1;
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < 3; i++) {
+            long bit = (hash + i * step) & mask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** returns the number of dead positions in the store */
+    public int size() {
+        return positions.size();
+    }
+
+    /** returns the lookups made since the store was opened */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /** returns the lookups that found a dead position */
+    public long getHits() {
+        return hits;
+    }
+
+    /** flushes recorded positions to the file */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** flushes and closes the file */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,238 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.common.TranspositionTable;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.SolverPhaseEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * depth first solver for chess that searches subtrees in parallel. near the
+ * root, positions are split into one fork join task per capture while the
+ * pool is short of work; below that each task searches its own
+ * {@link ChessBoard} the same way {@link ChessSearch} does. all tasks share
+ * dead positions through a lock-free {@link TranspositionTable}, checked
+ * against each position's check hash when keys are not exact, and the
+ * first task to find a solution stops the rest.
+ *
+ * @author Kristin Yap
+ */
+public class ParallelChessSearch {
+    /** default number of dead positions the shared table can hold */
+    public static final int DEFAULT_TABLE_SIZE = 1 << 22;
+    /** positions this close to the root may be split into tasks */
+    private static final int MAX_SPLIT_DEPTH = 6;
+    /** a position is split only while this few tasks are waiting to be stolen */
+    private static final int SURPLUS_TASKS = 2;
+    /** the name of this engine in flight recorder events */
+    private static final String ENGINE = "parallel depth first";
+
+    /** the starting config */
+    private final ChessConfig start;
+    /** the pool the tasks run in */
+    private final ForkJoinPool pool;
+    /** dead positions shared by every task */
+    private final TranspositionTable dead;
+    /** the moves of the first solution found */
+    private final AtomicReference<int[]> solution = new AtomicReference<>();
+    /** the number of positions searched */
+    private final LongAdder nodes = new LongAdder();
+    /** the number of positions proven to have no solution */
+    private final LongAdder deadPositions = new LongAdder();
+    /** the moves of the last solution found, or null */
+    private MoveList moveList;
+
+    /**
+     * creates a search that runs in the common pool
+     *
+     * @param start the starting config
+     */
+    public ParallelChessSearch(ChessConfig start) {
+        this(start, ForkJoinPool.commonPool(), DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * creates a search
+     *
+     * @param start the starting config
+     * @param pool the pool to run in
+     * @param tableSize the number of dead positions to remember
+     */
+    public ParallelChessSearch(ChessConfig start, ForkJoinPool pool, int tableSize) {
+        this.start = start;
+        this.pool = pool;
+        this.dead = new TranspositionTable(tableSize, !new ChessBoard(start).hasExactKey());
+    }
+
+    /**
+     * finds a path to the solution
+     *
+     * @return the sequence from start to end configs, or an empty list if
+     *          there is no solution
+     */
+    public List<Configuration> solve() {
+        nodes.reset();
+        deadPositions.reset();
+        solution.set(null);
+        moveList = null;
+        ChessBoard board = new ChessBoard(start);
+        boolean timed = new SolverPhaseEvent().isEnabled();
+        long begin = timed ? System.nanoTime() : 0;
+        boolean solved = board.getPieceCount() > 0 && pool.invoke(new Subtree(board, new int[0]));
+        if (timed) {
+            SolverPhaseEvent.commit(ENGINE, "search", System.nanoTime() - begin, nodes.sum(), nodes.sum(),
+                    deadPositions.sum(), board.getRows(), board.getCols(), board.getPieceCount());
+        }
+        if (solved) {
+            int[] line = solution.get();
+            moveList = MoveList.of(board.getRows(), board.getCols(), line, line.length);
+            return moveList.replay(start);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * returns the moves of the solution found by the last {@link #solve()}
+     *
+     * @return the moves, or null if there was no solution
+     */
+    public MoveList getMoveList() {
+        return moveList;
+    }
+
+    /** returns the number of positions searched */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * returns the number of positions proven to have no solution. a
+     * position is counted again if it is proven after the table has
+     * forgotten it
+     */
+    public long getDeadPositions() {
+        return deadPositions.sum();
+    }
+
+    /** the search below one position, run as a task. tasks are never serialized */
+    @SuppressWarnings("serial")
+    private final class Subtree extends RecursiveTask<Boolean> {
+        /** the position, owned by this task */
+        private final ChessBoard board;
+        /** the moves that lead from the start to the position */
+        private final int[] prefix;
+        /** move buffers for the sequential search, one for each depth */
+        private int[][] moves;
+        /** moves of the sequential search, one for each depth */
+        private int[] line;
+        /** the number of positions this task searched */
+        private long searched;
+
+        /**
+         * creates a task for a position
+         *
+         * @param board the position, which the task takes over
+         * @param prefix the moves that lead to it
+         */
+        Subtree(ChessBoard board, int[] prefix) {
+            this.board = board;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected Boolean compute() {
+            boolean solved;
+            if (prefix.length < MAX_SPLIT_DEPTH && board.getPieceCount() > 2
+                    && getSurplusQueuedTaskCount() <= SURPLUS_TASKS) {
+                solved = split();
+            }
+            else {
+                int remaining = board.getPieceCount();
+                moves = new int[Math.max(1, remaining)][];
+                for (int depth = 0; depth < moves.length; depth++) {
+                    moves[depth] = new int[ChessBoard.maxMoves(remaining - depth)];
+                }
+                line = new int[moves.length];
+                solved = search(0);
+            }
+            nodes.add(searched);
+            return solved;
+        }
+
+        /**
+         * searches each capture from the position in its own task
+         *
+         * @return true if one of them found a solution
+         */
+        private boolean split() {
+            searched++;
+            long key = board.key();
+            if (dead.contains(key, board.checkHash())) {
+                return false;
+            }
+            int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+            int count = board.generateMoves(buffer);
+            List<Subtree> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ChessBoard child = new ChessBoard(board);
+                child.makeMove(buffer[i]);
+                int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+                childPrefix[prefix.length] = buffer[i];
+                children.add(new Subtree(child, childPrefix));
+            }
+            boolean solved = false;
+            for (Subtree child : invokeAll(children)) {
+                solved |= child.join();
+            }
+            if (!solved && solution.get() == null && dead.add(key, board.checkHash())) {
+                deadPositions.increment();
+            }
+            return solved;
+        }
+
+        /**
+         * searches the current position in this task
+         *
+         * @param depth the number of moves made below the task's position
+         * @return true if the position can be solved
+         */
+        private boolean search(int depth) {
+            searched++;
+            if (board.getPieceCount() == 1) {
+                int[] found = Arrays.copyOf(prefix, prefix.length + depth);
+                System.arraycopy(line, 0, found, prefix.length, depth);
+                solution.compareAndSet(null, found);
+                return true;
+            }
+            long key = board.key();
+            if (solution.get() != null || dead.contains(key, board.checkHash())) {
+                return false;
+            }
+            int[] buffer = moves[depth];
+            int count = board.generateMoves(buffer);
+            for (int i = 0; i < count; i++) {
+                int move = buffer[i];
+                line[depth] = move;
+                board.makeMove(move);
+                boolean solved = search(depth + 1);
+                board.unmakeMove(move);
+                if (solved) {
+                    return true;
+                }
+            }
+            if (solution.get() == null && dead.add(key, board.checkHash())) {
+                deadPositions.increment();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package puzzles.chess.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * how each kind of piece captures, as data instead of code. a piece is a
+ * list of steps, each a row and col offset that is either taken once (a
+ * leap) or repeated to the edge of the board (a ray). the six standard
+ * pieces are built in; others are defined by lines at the top of a puzzle
+ * file, before the rows and cols, such as
+ * <pre>
+ * piece C leap 3,1
+ * piece A Q N
+ * piece H step -1,0 ray 1,1
+ * </pre>
+ * a definition lists other pieces to borrow their steps, "leap r,c" and
+ * "slide r,c" for the offset in every direction, and "step r,c" and
+ * "ray r,c" for the offset in that direction only. the rules are compiled
+ * into a target table for each board size, so generating captures is a
+ * table lookup whatever the piece.
+ *
+ * @author Kristin Yap
+ */
+public final class PieceRules {
+    /**
+     * one direction a piece can capture in
+     *
+     * @param rows rows moved by one step
+     * @param cols cols moved by one step
+     * @param slides does the piece keep going in this direction?
+     */
+    public record Step(int rows, int cols, boolean slides) {}
+
+    /** pieces are ascii characters, so tables are indexed by them directly */
+    public static final int SYMBOLS = 128;
+    /** the keyword that starts a piece definition */
+    public static final String DEFINITION = "piece";
+
+    /** the standard pieces, in the order ChessConfig always generated their captures */
+    public static final PieceRules STANDARD = new PieceRules(Map.of(), standardSteps());
+
+    /** steps of every piece */
+    private final Map<Character, List<Step>> steps;
+    /** the definition lines this set adds to the standard pieces */
+    private final Map<Character, String> definitions;
+    /** the last table compiled, reused while boards keep the same size */
+    private volatile Compiled compiled;
+
+    /**
+     * a target table and the board size it was compiled for
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param targets target squares by piece and square
+     */
+    private record Compiled(int rows, int cols, int[][][] targets) {}
+
+    /**
+     * creates a set of rules
+     *
+     * @param definitions the definition lines
+     * @param steps steps of every piece
+     */
+    private PieceRules(Map<Character, String> definitions, Map<Character, List<Step>> steps) {
+        this.definitions = definitions;
+        this.steps = steps;
+    }
+
+    /** returns the steps of the standard pieces */
+    private static Map<Character, List<Step>> standardSteps() {
+        int[][] diagonals = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+        int[][] lines = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        Map<Character, List<Step>> steps = new LinkedHashMap<>();
+        steps.put('B', steps(diagonals, true));
+        steps.put('K', steps(new int[][]{{-1, 0}, {-1, -1}, {-1, 1}, {1, 0}, {1, -1}, {1, 1}, {0, -1}, {0, 1}}, false));
+        steps.put('N', steps(new int[][]{{-2, -1}, {-2, 1}, {2, -1}, {2, 1}, {-1, -2}, {1, -2}, {-1, 2}, {1, 2}}, false));
+        // pawns only capture up the board
+        steps.put('P', steps(new int[][]{{-1, -1}, {-1, 1}}, false));
+        List<Step> queen = new ArrayList<>(steps.get('B'));
+        queen.addAll(steps(lines, true));
+        steps.put('Q', List.copyOf(queen));
+        steps.put('R', steps(lines, true));
+        return steps;
+    }
+
+    /**
+     * makes steps from offsets
+     *
+     * @param offsets the row and col offsets
+     * @param slides do the steps repeat?
+     * @return the steps
+     */
+    private static List<Step> steps(int[][] offsets, boolean slides) {
+        List<Step> result = new ArrayList<>();
+        for (int[] offset : offsets) {
+            result.add(new Step(offset[0], offset[1], slides));
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * is a line of a puzzle file a piece definition?
+     *
+     * @param line the line
+     * @return true if it starts with the definition keyword
+     */
+    public static boolean isDefinition(String line) {
+        return line.strip().startsWith(DEFINITION + " ");
+    }
+
+    /**
+     * adds a piece to these rules
+     *
+     * @param line a definition such as "piece C leap 3,1"
+     * @return new rules with the piece defined
+     * @throws IllegalArgumentException if the definition is malformed
+     */
+    public PieceRules define(String line) {
+        String[] tokens = line.strip().split("\\s+");
+        if (tokens.length < 3 || !tokens[0].equals(DEFINITION) || tokens[1].length() != 1
+                || !isSymbol(tokens[1].charAt(0))) {
+            throw new IllegalArgumentException("Bad piece definition: " + line);
+        }
+        char symbol = tokens[1].charAt(0);
+        List<Step> result = new ArrayList<>();
+        for (int i = 2; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.length() == 1) {
+                List<Step> borrowed = steps.get(token.charAt(0));
+                if (borrowed == null) {
+                    throw new IllegalArgumentException("Unknown piece " + token + " in: " + line);
+                }
+                result.addAll(borrowed);
+                continue;
+            }
+            if (i + 1 == tokens.length) {
+                throw new IllegalArgumentException("Missing offset in: " + line);
+            }
+            int[] offset = offset(tokens[++i], line);
+            switch (token) {
+                case "leap" -> result.addAll(steps(symmetric(offset), false));
+                case "slide" -> result.addAll(steps(symmetric(offset), true));
+                case "step" -> result.add(new Step(offset[0], offset[1], false));
+                case "ray" -> result.add(new Step(offset[0], offset[1], true));
+                default -> throw new IllegalArgumentException("Unknown move " + token + " in: " + line);
+            }
+        }
+        Map<Character, List<Step>> newSteps = new LinkedHashMap<>(steps);
+        newSteps.put(symbol, List.copyOf(result));
+        Map<Character, String> newDefinitions = new LinkedHashMap<>(definitions);
+        newDefinitions.put(symbol, String.join(" ", tokens));
+        return new PieceRules(newDefinitions, newSteps);
+    }
+
+    /**
+     * rules from the text of {@link #getDefinitions()}
+     *
+     * @param text the definitions, empty for the standard pieces
+     * @return the rules
+     * @throws IllegalArgumentException if a definition is malformed
+     */
+    public static PieceRules parse(String text) {
+        PieceRules rules = STANDARD;
+        if (!text.isEmpty()) {
+            for (String line : text.split(";")) {
+                rules = rules.define(line.replace('_', ' '));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * can a character stand for a piece?
+     *
+     * @param symbol the character
+     * @return true for visible ascii other than the empty square and separators
+     */
+    private static boolean isSymbol(char symbol) {
+        return symbol > ' ' && symbol < SYMBOLS - 1 && symbol != ChessBoard.EMPTY
+                && symbol != ';' && symbol != '_' && symbol != '|';
+    }
+
+    /**
+     * reads a row and col offset
+     *
+     * @param token the offset, e.g. "3,1"
+     * @param line the definition, for errors
+     * @return the row and col
+     */
+    private static int[] offset(String token, String line) {
+        String[] parts = token.split(",");
+        try {
+            if (parts.length == 2) {
+                int[] offset = {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+                if (offset[0] != 0 || offset[1] != 0) {
+                    return offset;
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Bad offset " + token + " in: " + line);
+    }
+
+    /**
+     * an offset turned and flipped every way, without repeats
+     *
+     * @param offset the row and col offset
+     * @return the distinct offsets
+     */
+    private static int[][] symmetric(int[] offset) {
+        int r = Math.abs(offset[0]);
+        int c = Math.abs(offset[1]);
+        int[][] all = {{-r, -c}, {-r, c}, {r, -c}, {r, c}, {-c, -r}, {c, -r}, {-c, r}, {c, r}};
+        List<int[]> distinct = new ArrayList<>();
+        for (int[] candidate : all) {
+            boolean seen = false;
+            for (int[] kept : distinct) {
+                seen |= kept[0] == candidate[0] && kept[1] == candidate[1];
+            }
+            if (!seen) {
+                distinct.add(candidate);
+            }
+        }
+        return distinct.toArray(new int[0][]);
+    }
+
+    /** returns every piece with rules, the standard pieces first */
+    public String getPieces() {
+        StringBuilder pieces = new StringBuilder();
+        for (char piece : steps.keySet()) {
+            pieces.append(piece);
+        }
+        return pieces.toString();
+    }
+
+    /**
+     * gets the steps of a piece
+     *
+     * @param piece the piece
+     * @return its steps, empty for a piece with no rules
+     */
+    public List<Step> getSteps(char piece) {
+        return steps.getOrDefault(piece, List.of());
+    }
+
+    /**
+     * does a piece move along whole lines?
+     *
+     * @param piece the piece
+     * @return true if any of its steps slides
+     */
+    public boolean slides(char piece) {
+        for (Step step : getSteps(piece)) {
+            if (step.slides()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** are these the standard pieces only? */
+    public boolean isStandard() {
+        return definitions.isEmpty();
+    }
+
+    /**
+     * the pieces these rules add, as one line of text with no spaces, e.g.
+     * "piece_C_leap_3,1;piece_A_Q_N"
+     *
+     * @return the definitions, empty for the standard pieces
+     */
+    public String getDefinitions() {
+        return String.join(";", definitions.values()).replace(' ', '_');
+    }
+
+    /**
+     * lists, for every piece and square, the squares the piece could capture
+     * on from that square, in the order of its steps and outwards along each
+     * ray. the table for the last board size asked for is kept
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @return target squares indexed by piece and starting square, null for
+     *          pieces with no rules
+     */
+    public int[][][] compile(int rows, int cols) {
+        Compiled last = compiled;
+        if (last != null && last.rows() == rows && last.cols() == cols) {
+            return last.targets();
+        }
+        int[][][] targets = new int[SYMBOLS][][];
+        for (Map.Entry<Character, List<Step>> piece : steps.entrySet()) {
+            targets[piece.getKey()] = compile(piece.getValue(), rows, cols);
+        }
+        compiled = new Compiled(rows, cols, targets);
+        return targets;
+    }
+
+    /**
+     * lists the target squares of one piece. steps borrowed from several
+     * pieces can overlap, as in "piece A Q R", so each square is listed
+     * once, the first time a step reaches it; a piece then never has more
+     * captures than there are other pieces
+     *
+     * @param pieceSteps the steps of the piece
+     * @param rows board rows
+     * @param cols board cols
+     * @return target squares indexed by starting square
+     */
+    private static int[][] compile(List<Step> pieceSteps, int rows, int cols) {
+        int[][] result = new int[rows * cols][];
+        int[] scratch = new int[pieceSteps.size() * Math.max(rows, cols)];
+        boolean[] listed = new boolean[rows * cols];
+        for (int square = 0; square < result.length; square++) {
+            int count = 0;
+            for (Step step : pieceSteps) {
+                int row = square / cols + step.rows();
+                int col = square % cols + step.cols();
+                while (row >= 0 && row < rows && col >= 0 && col < cols) {
+                    int target = row * cols + col;
+                    if (!listed[target]) {
+                        listed[target] = true;
+                        scratch[count++] = target;
+                    }
+                    if (!step.slides()) {
+                        break;
+                    }
+                    row += step.rows();
+                    col += step.cols();
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                listed[scratch[i]] = false;
+            }
+            result[square] = Arrays.copyOf(scratch, count);
+        }
+        return result;
+    }
+}
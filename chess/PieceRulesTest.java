@@ -0,0 +1,68 @@
+package puzzles.chess.model;
+
+import java.util.Arrays;
+
+/**
+ * checks of {@link PieceRules}. run it with
+ * {@code java puzzles.chess.model.PieceRulesTest}; the first failed check
+ * throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class PieceRulesTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        overlappingStepsListEachTargetOnce();
+        overlappingStepsFitTheMoveBuffer();
+        System.out.println("PieceRulesTest: ok");
+    }
+
+    /** a piece borrowing a queen's and a rook's steps reaches each square once, as a queen does */
+    private static void overlappingStepsListEachTargetOnce() {
+        int[][][] targets = PieceRules.STANDARD.define("piece A Q R").compile(5, 5);
+        for (int square = 0; square < 25; square++) {
+            int[] reach = targets['A'][square];
+            check(Arrays.stream(reach).distinct().count() == reach.length, "repeated target from " + square);
+            check(Arrays.equals(sorted(reach), sorted(targets['Q'][square])), "A differs from Q on " + square);
+        }
+    }
+
+    /**
+     * a full board of such pieces has no more captures than the buffer for
+     * its piece count, so the search engines can solve it
+     */
+    private static void overlappingStepsFitTheMoveBuffer() {
+        ChessBoard overlapping = ChessBoard.fromEncoding("3x3:AAAAAAAAA|piece_A_Q_R");
+        ChessBoard queens = ChessBoard.fromEncoding("3x3:QQQQQQQQQ");
+        int[] buffer = new int[ChessBoard.maxMoves(9)];
+        check(overlapping.generateMoves(buffer) == queens.generateMoves(buffer), "captures differ from queens");
+    }
+
+    /**
+     * copies and sorts squares
+     *
+     * @param squares the squares
+     * @return them in order
+     */
+    private static int[] sorted(int[] squares) {
+        int[] result = squares.clone();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package puzzles.chess.gui;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the piece images at one size. images are scaled when they are decoded and
+ * decoded in the background, and each size is only loaded once per run.
+ *
+ * @author Kristin Yap
+ */
+public final class PieceSprites {
+    /** The resources directory is located directly underneath the gui package */
+    private final static String RESOURCES_DIR = "resources/";
+    /** sprites already loaded, by size */
+    private static final Map<Integer, PieceSprites> LOADED = new ConcurrentHashMap<>();
+
+    /** the image of each piece */
+    private final Map<Character, Image> images = new HashMap<>();
+
+    /**
+     * starts loading the images at a size
+     *
+     * @param size width and height of each image
+     */
+    private PieceSprites(int size) {
+        images.put('B', load("bishop.png", size));
+        images.put('K', load("king.png", size));
+        images.put('N', load("knight.png", size));
+        images.put('P', load("pawn.png", size));
+        images.put('Q', load("queen.png", size));
+        images.put('R', load("rook.png", size));
+    }
+
+    /**
+     * starts loading one image in the background
+     *
+     * @param name the file in the resources directory
+     * @param size width and height to scale it to
+     * @return the image, which may still be loading
+     */
+    private static Image load(String name, int size) {
+        String url = PieceSprites.class.getResource(RESOURCES_DIR + name).toExternalForm();
+        return new Image(url, size, size, true, true, true);
+    }
+
+    /**
+     * gets the sprites at a size, loading them the first time
+     *
+     * @param size width and height of each image
+     * @return the sprites
+     */
+    public static PieceSprites ofSize(int size) {
+        return LOADED.computeIfAbsent(size, PieceSprites::new);
+    }
+
+    /**
+     * gets the image of a piece
+     *
+     * @param piece the piece
+     * @return its image, or null for an empty square
+     */
+    public Image get(char piece) {
+        return images.get(piece);
+    }
+
+    /**
+     * is the image of a piece ready to draw?
+     *
+     * @param piece the piece
+     * @return true if the piece has an image that has finished loading
+     */
+    public boolean isLoaded(char piece) {
+        Image image = images.get(piece);
+        return image != null && image.getProgress() >= 1.0 && !image.isError();
+    }
+
+    /**
+     * runs an action each time one of the images still loading finishes.
+     * the images are shared by every board drawn at this size, so each
+     * listener removes itself once its image is done rather than keeping
+     * the action alive for the rest of the run
+     *
+     * @param action the action, run on the JavaFX thread
+     */
+    public void onLoaded(Runnable action) {
+        for (Image image : images.values()) {
+            if (image.getProgress() >= 1.0) {
+                continue;
+            }
+            image.progressProperty().addListener(new ChangeListener<Number>() {
+                @Override
+                public void changed(ObservableValue<? extends Number> observable, Number before, Number after) {
+                    if (after.doubleValue() >= 1.0) {
+                        observable.removeListener(this);
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
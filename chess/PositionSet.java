@@ -0,0 +1,78 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.common.LongHashSet;
+import puzzles.common.LongLongHashMap;
+
+/**
+ * a set of positions of one puzzle, kept by {@link ChessBoard#key()}. when
+ * the puzzle's keys are exact the key is all that is stored. otherwise the
+ * key is a hash, so it is stored with the position's
+ * {@link ChessBoard#checkHash()} and a position is only found when both
+ * match. a position whose key collides with one already in the set is not
+ * added, which can cost a repeated search but never a wrong answer.
+ *
+ * @author Kristin Yap
+ */
+final class PositionSet {
+    /** keys of the positions, when keys are exact, otherwise null */
+    private final LongHashSet exact;
+    /** the check hash of each position by key, when keys are hashes, otherwise null */
+    private final LongLongHashMap hashed;
+
+    /**
+     * creates an empty set for the positions of a puzzle
+     *
+     * @param board any position of the puzzle
+     */
+    PositionSet(ChessBoard board) {
+        if (board.hasExactKey()) {
+            exact = new LongHashSet();
+            hashed = null;
+        }
+        else {
+            exact = null;
+            hashed = new LongLongHashMap();
+        }
+    }
+
+    /**
+     * adds the current position of a board
+     *
+     * @param board the board
+     * @return true if the position was added, false if it was already in
+     *          the set or its key is taken by another position
+     */
+    boolean add(ChessBoard board) {
+        return exact != null ? exact.add(board.key()) : hashed.putIfAbsent(board.key(), board.checkHash());
+    }
+
+    /**
+     * is the current position of a board in the set?
+     *
+     * @param board the board
+     * @return true if the position was added
+     */
+    boolean contains(ChessBoard board) {
+        if (exact != null) {
+            return exact.contains(board.key());
+        }
+        long key = board.key();
+        return hashed.containsKey(key) && hashed.get(key, 0L) == board.checkHash();
+    }
+
+    /** returns the number of positions in the set */
+    int size() {
+        return exact != null ? exact.size() : hashed.size();
+    }
+
+    /** removes every position */
+    void clear() {
+        if (exact != null) {
+            exact.clear();
+        }
+        else {
+            hashed.clear();
+        }
+    }
+}
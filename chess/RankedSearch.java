@@ -0,0 +1,279 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.chess.model.PieceRules;
+import puzzles.chess.model.StateRanking;
+import puzzles.common.solver.SolverPhaseEvent;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * breadth first search with a bit for every position instead of a map of
+ * configs. every capture removes a piece, so the positions after k
+ * captures form a layer of their own and can only be reached again from
+ * the same layer. each layer is a {@link BitSet} indexed by
+ * {@link StateRanking#layerRank(char[])}: the frontier is walked by
+ * unranking its set bits, and a position is deduplicated by setting its
+ * bit in the next layer, with no hashing and no objects kept. memory is
+ * one bit per possible position, known before the search starts; see
+ * {@link #bitsNeeded(StateRanking)}.
+ *
+ * every solution takes one capture per piece but the last, so the first
+ * position with one piece ends a shortest solution. the captures are
+ * found again by walking back through the layers, trying each capture
+ * that could have led to a position and keeping one whose position is
+ * set in the layer before.
+ *
+ * @author Kristin Yap
+ */
+public class RankedSearch {
+    /** the name of this engine in flight recorder events */
+    private static final String ENGINE = "ranked breadth first";
+
+    /** the starting position */
+    private final ChessBoard start;
+    /** the ranking of the puzzle's positions */
+    private final StateRanking ranking;
+    /** squares that started with a piece */
+    private final int[] slotSquares;
+    /** slot of each square, -1 for squares that started empty */
+    private final int[] slotOf;
+    /** the kinds of piece the puzzle starts with */
+    private final String kinds;
+    /** how many of each kind of piece the puzzle starts with, by piece */
+    private final int[] counts;
+    /** squares each piece on each square could capture on, null for pieces with no rules */
+    private final int[][][] targets;
+    /** positions whose captures were generated */
+    private long expanded;
+    /** captures generated */
+    private long totalConfigs;
+    /** positions set in the layers */
+    private long uniqueConfigs;
+
+    /**
+     * creates a search
+     *
+     * @param start the starting config
+     * @throws IllegalArgumentException if a layer is too large for a {@link BitSet}
+     */
+    public RankedSearch(ChessConfig start) {
+        this(new ChessBoard(start), new StateRanking(start));
+    }
+
+    /**
+     * creates a search with a ranking made earlier
+     *
+     * @param start the starting position, which is left as it is
+     * @param ranking the ranking of its positions
+     * @throws IllegalArgumentException if a layer is too large for a {@link BitSet}
+     */
+    public RankedSearch(ChessBoard start, StateRanking ranking) {
+        if (bitsNeeded(ranking) == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many positions for a bit each: "
+                    + ranking.size(ranking.getSlotCount()));
+        }
+        this.start = start;
+        this.ranking = ranking;
+        this.slotSquares = start.getSlotSquares();
+        this.slotOf = new int[start.getRows() * start.getCols()];
+        Arrays.fill(slotOf, -1);
+        StringBuilder found = new StringBuilder();
+        this.counts = new int[PieceRules.SYMBOLS];
+        for (int slot = 0; slot < slotSquares.length; slot++) {
+            slotOf[slotSquares[slot]] = slot;
+            char piece = start.getCell(slotSquares[slot]);
+            if (piece != ChessBoard.EMPTY && counts[piece]++ == 0) {
+                found.append(piece);
+            }
+        }
+        this.kinds = found.toString();
+        this.targets = start.getRules().compile(start.getRows(), start.getCols());
+    }
+
+    /**
+     * the bits the layers could take
+     *
+     * @param ranking the ranking of the puzzle's positions
+     * @return the bits, or {@link Long#MAX_VALUE} if a layer is too large
+     *          for a {@link BitSet}
+     */
+    public static long bitsNeeded(StateRanking ranking) {
+        long bits = 0;
+        for (int pieces = 1; pieces <= ranking.getSlotCount(); pieces++) {
+            long size = ranking.layerSize(pieces);
+            if (size > Integer.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            bits += size;
+        }
+        return bits;
+    }
+
+    /**
+     * searches for a shortest solution
+     *
+     * @return the captures of a solution, or null if there is none
+     */
+    public MoveList solve() {
+        boolean timed = new SolverPhaseEvent().isEnabled();
+        long begin = timed ? System.nanoTime() : 0;
+        MoveList moves = searchLayers();
+        if (timed) {
+            SolverPhaseEvent.commit(ENGINE, "search", System.nanoTime() - begin, expanded, totalConfigs, uniqueConfigs,
+                    start.getRows(), start.getCols(), start.getPieceCount());
+        }
+        return moves;
+    }
+
+    /**
+     * expands the layers one after the other until a capture leaves one piece
+     *
+     * @return the captures of a solution, or null if there is none
+     */
+    private MoveList searchLayers() {
+        expanded = 0;
+        totalConfigs = 0;
+        uniqueConfigs = 1;
+        int pieces = start.getPieceCount();
+        if (pieces <= 1) {
+            return pieces == 1 ? MoveList.of(start.getRows(), start.getCols(), new int[0], 0) : null;
+        }
+        ChessBoard board = new ChessBoard(start);
+        char[] slots = new char[slotSquares.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            slots[slot] = start.getCell(slotSquares[slot]);
+        }
+        BitSet[] layers = new BitSet[pieces + 1];
+        layers[pieces] = new BitSet((int) ranking.layerSize(pieces));
+        layers[pieces].set((int) ranking.layerRank(slots));
+        int[] buffer = new int[ChessBoard.maxMoves(pieces)];
+        for (int k = pieces; k > 1; k--) {
+            BitSet frontier = layers[k];
+            BitSet next = new BitSet((int) ranking.layerSize(k - 1));
+            layers[k - 1] = next;
+            for (int rank = frontier.nextSetBit(0); rank >= 0; rank = frontier.nextSetBit(rank + 1)) {
+                ranking.unrank(k, rank, slots);
+                board.setSlots(slots);
+                expanded++;
+                int count = board.generateMoves(buffer);
+                for (int i = 0; i < count; i++) {
+                    int move = buffer[i];
+                    int from = slotOf[ChessBoard.from(move)];
+                    int to = slotOf[ChessBoard.to(move)];
+                    char piece = slots[from];
+                    slots[from] = ChessBoard.EMPTY;
+                    slots[to] = piece;
+                    int child = (int) ranking.layerRank(slots);
+                    slots[from] = piece;
+                    slots[to] = ChessBoard.captured(move);
+                    totalConfigs++;
+                    if (!next.get(child)) {
+                        next.set(child);
+                        uniqueConfigs++;
+                        if (k == 2) {
+                            return walkBack(layers, k, rank, move);
+                        }
+                    }
+                }
+            }
+            if (next.isEmpty()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * rebuilds the captures of a solution from its last one
+     *
+     * @param layers the layers searched, by piece count
+     * @param pieces the pieces before the last capture
+     * @param rank the position before the last capture, ranked within its layer
+     * @param last the last capture
+     * @return the captures from the start
+     */
+    private MoveList walkBack(BitSet[] layers, int pieces, int rank, int last) {
+        int total = start.getPieceCount();
+        int[] line = new int[total - 1];
+        line[total - pieces] = last;
+        char[] slots = new char[slotSquares.length];
+        ranking.unrank(pieces, rank, slots);
+        for (int k = pieces; k < total; k++) {
+            line[total - k - 1] = stepBack(layers[k + 1], k, slots);
+        }
+        return MoveList.of(start.getRows(), start.getCols(), line, line.length);
+    }
+
+    /**
+     * finds a capture from the layer before that leads to a position, and
+     * changes the position into the one it was made from
+     *
+     * @param before the layer with one more piece
+     * @param pieces the pieces on the position
+     * @param slots the position, changed in place
+     * @return the capture
+     */
+    private int stepBack(BitSet before, int pieces, char[] slots) {
+        int[] used = new int[counts.length];
+        for (char piece : slots) {
+            if (piece != ChessBoard.EMPTY) {
+                used[piece]++;
+            }
+        }
+        for (int to = 0; to < slots.length; to++) {
+            char piece = slots[to];
+            if (piece == ChessBoard.EMPTY || targets[piece] == null) {
+                continue;
+            }
+            for (int from = 0; from < slots.length; from++) {
+                if (slots[from] != ChessBoard.EMPTY || !reaches(targets[piece][slotSquares[from]], slotSquares[to])) {
+                    continue;
+                }
+                for (int kind = 0; kind < kinds.length(); kind++) {
+                    char captured = kinds.charAt(kind);
+                    if (used[captured] == counts[captured]) {
+                        continue;
+                    }
+                    slots[from] = piece;
+                    slots[to] = captured;
+                    if (before.get((int) ranking.layerRank(slots))) {
+                        return ChessBoard.encode(slotSquares[from], slotSquares[to], captured);
+                    }
+                    slots[from] = ChessBoard.EMPTY;
+                    slots[to] = piece;
+                }
+            }
+        }
+        throw new IllegalStateException("No position before one with " + pieces + " pieces");
+    }
+
+    /**
+     * is a square among a piece's targets?
+     *
+     * @param reach the target squares
+     * @param square the square
+     * @return true if the piece can capture on it
+     */
+    private static boolean reaches(int[] reach, int square) {
+        for (int target : reach) {
+            if (target == square) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** returns the captures generated by the last search */
+    public long getTotalConfigs() {
+        return totalConfigs;
+    }
+
+    /** returns the positions the last search set a bit for, the start included */
+    public long getUniqueConfigs() {
+        return uniqueConfigs;
+    }
+}
@@ -0,0 +1,36 @@
+package puzzles.chess.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * a flight recorder event for one {@link ChessGUI#update} call, the time
+ * spent redrawing the board and status after the model changed
+ *
+ * @author Kristin Yap
+ */
+@Name("puzzles.chess.Render")
+@Label("Chess Render")
+@Category({"Puzzles", "Chess"})
+@Description("Redrawing the chess board after a model update")
+@StackTrace(false)
+class RenderEvent extends Event {
+    @Label("Rows")
+    int rows;
+
+    @Label("Cols")
+    int cols;
+
+    @Label("Pieces")
+    int pieces;
+
+    @Label("Cells Drawn")
+    int cells;
+
+    @Label("Whole Board")
+    boolean wholeBoard;
+}
@@ -0,0 +1,36 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessAnalyst;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.SolveCache;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * the solving behind a game's hints and its analysis of the player's
+ * captures. a hint is solved with the strategy {@link StrategySelector}
+ * picks, through the {@link SolveCache}; a capture is judged by a depth
+ * first {@link ChessSearch} that shares late game positions with every
+ * other search of the same board size
+ *
+ * @author Kristin Yap
+ */
+public class SearchAnalyst implements ChessAnalyst {
+    @Override
+    public SolveCache.Result solve(ChessConfig start) {
+        SolveStrategy strategy = StrategySelector.select(start).strategy();
+        return SolveCache.solve(start, strategy.name(), strategy::solve);
+    }
+
+    @Override
+    public Boolean isSolvable(ChessConfig config, BooleanSupplier stop) {
+        ChessSearch search = new ChessSearch(config, MoveOrdering.LEAST_MOBILE);
+        search.useSharedCache(SubpositionCache.forBoard(config.getRows(), config.getCols(), config.getRules()));
+        search.stopWhen(stop);
+        search.solve();
+        if (search.wasStopped()) {
+            return null;
+        }
+        return search.getMoveList() != null || config.isSolution();
+    }
+}
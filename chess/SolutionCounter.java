@@ -0,0 +1,126 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * counts the distinct solutions of a chess puzzle. every capture removes a
+ * piece, so the positions form a DAG layered by piece count and the number
+ * of solutions from a position is the sum over its captures. each position
+ * is counted once and remembered.
+ *
+ * @author Kristin Yap
+ */
+public class SolutionCounter {
+    /** the board being counted */
+    private final ChessBoard board;
+    /** move buffers, one for each depth */
+    private final int[][] moves;
+    /** number of solutions from each position seen so far, by key */
+    private final Map<Long, Count> counts = new HashMap<>();
+    /** number of captures from the starting board */
+    private int firstMoves;
+    /** number of captures from the starting board that can still be solved */
+    private int solvableFirstMoves;
+
+    /**
+     * creates a counter for a starting config
+     *
+     * @param start the starting config
+     */
+    public SolutionCounter(ChessConfig start) {
+        this.board = new ChessBoard(start);
+        int pieces = board.getPieceCount();
+        this.moves = new int[Math.max(1, pieces)][];
+        for (int depth = 0; depth < moves.length; depth++) {
+            moves[depth] = new int[ChessBoard.maxMoves(pieces - depth)];
+        }
+    }
+
+    /**
+     * counts the solutions from the starting board, along with how many of
+     * its first moves can be solved
+     *
+     * @return the number of distinct capture sequences that leave one piece
+     */
+    public BigInteger count() {
+        counts.clear();
+        firstMoves = 0;
+        solvableFirstMoves = 0;
+        if (board.getPieceCount() == 0) {
+            return BigInteger.ZERO;
+        }
+        if (board.getPieceCount() == 1) {
+            return BigInteger.ONE;
+        }
+        BigInteger total = BigInteger.ZERO;
+        int[] buffer = moves[0];
+        firstMoves = board.generateMoves(buffer);
+        for (int i = 0; i < firstMoves; i++) {
+            board.makeMove(buffer[i]);
+            BigInteger solutions = count(1);
+            board.unmakeMove(buffer[i]);
+            if (solutions.signum() > 0) {
+                solvableFirstMoves++;
+                total = total.add(solutions);
+            }
+        }
+        counts.putIfAbsent(board.key(), new Count(board.checkHash(), total));
+        return total;
+    }
+
+    /**
+     * counts the solutions from the current position
+     *
+     * @param depth the number of moves made so far
+     * @return the number of solutions
+     */
+    private BigInteger count(int depth) {
+        if (board.getPieceCount() == 1) {
+            return BigInteger.ONE;
+        }
+        long key = board.key();
+        Count known = counts.get(key);
+        // unless keys are exact, a key may belong to another position
+        if (known != null && known.check() == board.checkHash()) {
+            return known.solutions();
+        }
+        BigInteger total = BigInteger.ZERO;
+        int[] buffer = moves[depth];
+        int count = board.generateMoves(buffer);
+        for (int i = 0; i < count; i++) {
+            board.makeMove(buffer[i]);
+            total = total.add(count(depth + 1));
+            board.unmakeMove(buffer[i]);
+        }
+        counts.putIfAbsent(key, new Count(board.checkHash(), total));
+        return total;
+    }
+
+    /** returns the number of captures from the starting board */
+    public int getFirstMoves() {
+        return firstMoves;
+    }
+
+    /** returns the number of captures from the starting board that can be solved */
+    public int getSolvableFirstMoves() {
+        return solvableFirstMoves;
+    }
+
+    /** returns the number of positions counted, not including final ones */
+    public int getUniqueConfigs() {
+        return counts.size();
+    }
+
+    /**
+     * the solutions from a position
+     *
+     * @param check the position's check hash
+     * @param solutions the number of solutions
+     */
+    private record Count(long check, BigInteger solutions) {}
+}
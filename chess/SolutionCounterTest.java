@@ -0,0 +1,182 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * checks of {@link SolutionCounter} and {@link SolutionIterator}, against
+ * each other and against the breadth first {@link Solver}. run it with
+ * {@code java puzzles.chess.solver.SolutionCounterTest}; the first failed
+ * check throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class SolutionCounterTest {
+    /** pieces put on the random boards */
+    private static final String PIECES = "KQRBNP";
+
+    /**
+     * runs every check
+     *
+     * @param args not used
+     * @throws IOException if a puzzle file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        overlappingStepsCountEachSolutionOnce();
+        iteratorListsEverySolutionTheCounterCounts();
+        System.out.println("SolutionCounterTest: ok");
+    }
+
+    /**
+     * solutions are not counted once for each step of a piece's definition
+     * that reaches a square
+     *
+     * @throws IOException if a puzzle file cannot be written
+     */
+    private static void overlappingStepsCountEachSolutionOnce() throws IOException {
+        ChessConfig overlapping = puzzle("piece A Q R", "3 3", "A A .", "A . A", ". A A");
+        ChessConfig queens = puzzle("3 3", "Q Q .", "Q . Q", ". Q Q");
+        check(new SolutionCounter(overlapping).count().equals(new SolutionCounter(queens).count()),
+                "solution counts differ from queens");
+    }
+
+    /**
+     * on random boards the iterator lists as many solutions as the counter
+     * counts, each a distinct sequence of legal captures that leaves one
+     * piece, and there are some exactly when breadth first search finds a
+     * solution, which takes as many captures
+     *
+     * @throws IOException if a puzzle file cannot be written
+     */
+    private static void iteratorListsEverySolutionTheCounterCounts() throws IOException {
+        Random random = new Random(48);
+        int solvable = 0;
+        for (int trial = 0; trial < 200; trial++) {
+            ChessBoard board = randomBoard(random, 3 + random.nextInt(2), 3 + random.nextInt(2), 2 + random.nextInt(5));
+            ChessConfig start = config(board);
+            Set<String> listed = new HashSet<>();
+            // the iterator plays its captures on the board it is given
+            SolutionIterator solutions = new SolutionIterator(new ChessBoard(board));
+            while (solutions.hasNext()) {
+                MoveList moves = solutions.next();
+                check(moves.size() == board.getPieceCount() - 1, "solution of the wrong length on " + board.encode());
+                check(isSolution(start, moves), "not a solution on " + board.encode() + ": " + moves);
+                check(listed.add(moves.toString()), "solution listed twice on " + board.encode() + ": " + moves);
+            }
+            BigInteger counted = new SolutionCounter(start).count();
+            check(counted.equals(BigInteger.valueOf(listed.size())),
+                    "counted " + counted + " but listed " + listed.size() + " on " + board.encode());
+            Collection<Configuration> path = Solver.getShortestPath(start);
+            check(path.isEmpty() == listed.isEmpty(), "breadth first disagrees on " + board.encode());
+            if (!path.isEmpty()) {
+                check(path.size() == board.getPieceCount(), "breadth first length on " + board.encode());
+                solvable++;
+            }
+        }
+        check(solvable > 0, "no random board was solvable");
+    }
+
+    /**
+     * do captures leave one piece, each of them legal when it is made?
+     *
+     * @param start the starting config
+     * @param moves the captures
+     * @return true if they solve the puzzle
+     */
+    static boolean isSolution(ChessConfig start, MoveList moves) {
+        ChessConfig current = start;
+        for (int i = 0; i < moves.size(); i++) {
+            if (!current.isCapture(moves.from(i), moves.to(i))) {
+                return false;
+            }
+            current = new ChessConfig(current, moves.from(i), moves.to(i));
+        }
+        return current.isSolution();
+    }
+
+    /**
+     * a random board with standard pieces
+     *
+     * @param random the source of the board
+     * @param rows board rows
+     * @param cols board cols
+     * @param pieces the number of pieces, at most the number of squares
+     * @return the board
+     */
+    static ChessBoard randomBoard(Random random, int rows, int cols, int pieces) {
+        char[] cells = new char[rows * cols];
+        Arrays.fill(cells, ChessBoard.EMPTY);
+        for (int placed = 0; placed < pieces; ) {
+            int square = random.nextInt(cells.length);
+            if (cells[square] == ChessBoard.EMPTY) {
+                cells[square] = PIECES.charAt(random.nextInt(PIECES.length()));
+                placed++;
+            }
+        }
+        return ChessBoard.fromEncoding(rows + "x" + cols + ":" + String.valueOf(cells));
+    }
+
+    /**
+     * the config of a board with standard pieces
+     *
+     * @param board the board
+     * @return the config
+     * @throws IOException if a puzzle file cannot be written
+     */
+    static ChessConfig config(ChessBoard board) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(board.getRows() + " " + board.getCols());
+        for (int row = 0; row < board.getRows(); row++) {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < board.getCols(); col++) {
+                line.append(col == 0 ? "" : " ").append(board.getCell(row * board.getCols() + col));
+            }
+            lines.add(line.toString());
+        }
+        return puzzle(lines.toArray(new String[0]));
+    }
+
+    /**
+     * reads a puzzle from lines of a puzzle file
+     *
+     * @param lines the lines
+     * @return the starting config
+     * @throws IOException if the file cannot be written
+     */
+    static ChessConfig puzzle(String... lines) throws IOException {
+        Path file = Files.createTempFile("chess", ".txt");
+        try {
+            Files.write(file, Arrays.asList(lines));
+            return new ChessConfig(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * walks every solution of a chess puzzle, one at a time. the search is
+ * depth first and keeps its place between solutions in a stack of move
+ * buffers, one for each depth, so nothing past the solution asked for is
+ * searched. a position whose captures have all been tried without reaching
+ * a solution is remembered as dead and never searched again; a position
+ * that did reach one is not, since its other solutions are still wanted
+ * when it is reached along another line. memory is the stack and the dead
+ * positions, whatever the number of solutions.
+ *
+ * @author Kristin Yap
+ */
+public class SolutionIterator implements Iterator<MoveList> {
+    /** the board being searched */
+    private final ChessBoard board;
+    /** move buffers, one for each depth */
+    private final int[][] moves;
+    /** the number of captures in each buffer */
+    private final int[] counts;
+    /** the next capture to try at each depth */
+    private final int[] next;
+    /** has a solution been found below each depth since it was entered? */
+    private final boolean[] productive;
+    /** the captures made so far */
+    private final int[] line;
+    /** positions with no solution */
+    private final PositionSet dead;
+    /** the position being searched, -1 once the search is over */
+    private int depth;
+    /** the solution found but not yet returned, or null */
+    private MoveList pending;
+    /** positions searched */
+    private long nodes;
+
+    /**
+     * creates an iterator over the solutions of a starting config
+     *
+     * @param start the starting config
+     */
+    public SolutionIterator(ChessConfig start) {
+        this(new ChessBoard(start));
+    }
+
+    /**
+     * creates an iterator over the solutions of a board, which it plays its
+     * captures on and takes back again
+     *
+     * @param board the starting position
+     */
+    public SolutionIterator(ChessBoard board) {
+        this.board = board;
+        this.dead = new PositionSet(board);
+        int pieces = board.getPieceCount();
+        int levels = Math.max(1, pieces);
+        this.moves = new int[levels][];
+        this.counts = new int[levels];
+        this.next = new int[levels];
+        this.productive = new boolean[levels];
+        this.line = new int[levels];
+        this.depth = -1;
+        if (pieces == 1) {
+            pending = MoveList.of(board.getRows(), board.getCols(), line, 0);
+        }
+        else if (pieces > 1 && SolvabilityCheck.reason(board) == null) {
+            for (int d = 0; d < levels; d++) {
+                moves[d] = new int[ChessBoard.maxMoves(pieces - d)];
+            }
+            depth = 0;
+            enter();
+        }
+    }
+
+    /**
+     * a lazy stream of the solutions of a starting config. solutions are
+     * only searched for as the stream asks for them, so a limit stops the
+     * search
+     *
+     * @param start the starting config
+     * @return the solutions, each as its captures
+     */
+    public static Stream<MoveList> stream(ChessConfig start) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new SolutionIterator(start),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            pending = advance();
+        }
+        return pending != null;
+    }
+
+    @Override
+    public MoveList next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        MoveList result = pending;
+        pending = null;
+        return result;
+    }
+
+    /**
+     * generates the captures of the position at the current depth
+     */
+    private void enter() {
+        counts[depth] = board.generateMoves(moves[depth]);
+        next[depth] = 0;
+        productive[depth] = false;
+        nodes++;
+    }
+
+    /**
+     * searches on from where the last solution was found
+     *
+     * @return the next solution, or null if there are no more
+     */
+    private MoveList advance() {
+        while (depth >= 0) {
+            if (next[depth] < counts[depth]) {
+                int move = moves[depth][next[depth]++];
+                board.makeMove(move);
+                line[depth] = move;
+                if (board.getPieceCount() == 1) {
+                    productive[depth] = true;
+                    board.unmakeMove(move);
+                    return MoveList.of(board.getRows(), board.getCols(), line, depth + 1);
+                }
+                if (dead.contains(board)) {
+                    board.unmakeMove(move);
+                    continue;
+                }
+                depth++;
+                enter();
+            }
+            else {
+                // every capture from here has been tried
+                if (!productive[depth]) {
+                    dead.add(board);
+                }
+                boolean solved = productive[depth];
+                depth--;
+                if (depth >= 0) {
+                    board.unmakeMove(line[depth]);
+                    productive[depth] |= solved;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** returns the positions searched so far */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** returns the number of dead positions remembered so far */
+    public int getDeadPositions() {
+        return dead.size();
+    }
+}
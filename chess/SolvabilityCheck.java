@@ -0,0 +1,257 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.PieceRules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * proves some puzzles unsolvable without searching them. a capture always
+ * lands on an occupied square, so a square that has been emptied stays
+ * empty, and every square but the last one left must be emptied by a
+ * capture made from it. following those captures from any square leads to
+ * the square the last piece ends on, so that square must be reachable from
+ * every other along captures that could ever happen.
+ *
+ * the check builds a graph of those captures over the occupied squares. a
+ * square can hold its own piece or any kind of piece that could capture
+ * its way there, and it has an edge to every occupied square one of those
+ * pieces reaches. the graph is split into strongly connected groups; if
+ * more than one group has no edge leaving it, no square is reachable from
+ * all of them and at least two pieces must remain. this catches pieces no
+ * other piece can ever reach, pawns that can only capture upwards with
+ * nothing above them, leapers that never land on another piece and groups
+ * of pieces that can never meet.
+ *
+ * @author Kristin Yap
+ */
+public final class SolvabilityCheck {
+    /** not instantiated */
+    private SolvabilityCheck() {
+    }
+
+    /**
+     * looks for a reason a puzzle can never be solved
+     *
+     * @param start the starting config
+     * @return why it is unsolvable, or null if nothing rules it out
+     */
+    public static String reason(ChessConfig start) {
+        return reason(new ChessBoard(start));
+    }
+
+    /**
+     * looks for a reason a position can never be solved
+     *
+     * @param board the position
+     * @return why it is unsolvable, or null if nothing rules it out
+     */
+    public static String reason(ChessBoard board) {
+        int cols = board.getCols();
+        int area = board.getRows() * cols;
+        int[] squares = new int[board.getPieceCount()];
+        int[] index = new int[area];
+        int n = 0;
+        for (int square = 0; square < area; square++) {
+            index[square] = -1;
+            if (board.getCell(square) != ChessBoard.EMPTY) {
+                index[square] = n;
+                squares[n++] = square;
+            }
+        }
+        if (n <= 1) {
+            return null;
+        }
+        int[][][] targets = board.getRules().compile(board.getRows(), cols);
+
+        // which kinds of piece could ever stand on each square
+        boolean[][] holds = new boolean[n][PieceRules.SYMBOLS];
+        int[] pending = new int[n * PieceRules.SYMBOLS];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            char piece = board.getCell(squares[i]);
+            holds[i][piece] = true;
+            pending[size++] = i * PieceRules.SYMBOLS + piece;
+        }
+        while (size > 0) {
+            int entry = pending[--size];
+            int from = entry / PieceRules.SYMBOLS;
+            char piece = (char) (entry % PieceRules.SYMBOLS);
+            for (int square : reach(targets, piece, squares[from])) {
+                int to = index[square];
+                if (to >= 0 && !holds[to][piece]) {
+                    holds[to][piece] = true;
+                    pending[size++] = to * PieceRules.SYMBOLS + piece;
+                }
+            }
+        }
+
+        // the captures that could ever be made between occupied squares
+        boolean[][] edges = new boolean[n][n];
+        for (int from = 0; from < n; from++) {
+            for (char piece = 0; piece < PieceRules.SYMBOLS; piece++) {
+                if (holds[from][piece]) {
+                    for (int square : reach(targets, piece, squares[from])) {
+                        if (index[square] >= 0 && index[square] != from) {
+                            edges[from][index[square]] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] group = new Groups(edges).assign();
+        int groups = Arrays.stream(group).max().orElse(-1) + 1;
+        boolean[] leaves = new boolean[groups];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                if (edges[from][to] && group[from] != group[to]) {
+                    leaves[group[from]] = true;
+                }
+            }
+        }
+        List<String> closed = new ArrayList<>();
+        for (int g = 0; g < groups && closed.size() < 2; g++) {
+            if (!leaves[g]) {
+                closed.add(describe(board, squares, group, edges, g));
+            }
+        }
+        if (closed.size() < 2) {
+            return null;
+        }
+        return closed.get(0) + ", and " + closed.get(1) + ", so at least two pieces will always remain";
+    }
+
+    /**
+     * the squares a kind of piece could capture on from a square
+     *
+     * @param targets the target table
+     * @param piece the kind of piece
+     * @param square the square it stands on
+     * @return the target squares, empty for a piece with no rules
+     */
+    private static int[] reach(int[][][] targets, char piece, int square) {
+        return targets[piece] == null ? new int[0] : targets[piece][square];
+    }
+
+    /**
+     * describes a group of squares no capture can leave
+     *
+     * @param board the position
+     * @param squares the occupied squares
+     * @param group the group of each occupied square
+     * @param edges the possible captures
+     * @param g the group
+     * @return a description for the reason
+     */
+    private static String describe(ChessBoard board, int[] squares, int[] group, boolean[][] edges, int g) {
+        List<Integer> members = new ArrayList<>();
+        for (int i = 0; i < squares.length; i++) {
+            if (group[i] == g) {
+                members.add(i);
+            }
+        }
+        if (members.size() > 1) {
+            StringBuilder result = new StringBuilder("the pieces at");
+            for (int i : members) {
+                result.append(' ').append(board.coordinates(squares[i]));
+            }
+            return result.append(" can never capture outside their group").toString();
+        }
+        int only = members.get(0);
+        boolean attacked = false;
+        for (int from = 0; from < squares.length; from++) {
+            attacked |= edges[from][only];
+        }
+        return "the " + board.getCell(squares[only]) + " at " + board.coordinates(squares[only])
+                + (attacked ? " can never capture another piece" : " can never capture or be captured");
+    }
+
+    /** tarjan's strongly connected components over a small dense graph */
+    private static final class Groups {
+        /** the edges */
+        private final boolean[][] edges;
+        /** the group of each vertex, -1 until assigned */
+        private final int[] group;
+        /** the order each vertex was visited in, -1 until visited */
+        private final int[] order;
+        /** the lowest order reachable from each vertex */
+        private final int[] low;
+        /** vertices visited but not yet assigned a group */
+        private final int[] stack;
+        /** is each vertex on the stack? */
+        private final boolean[] onStack;
+        /** the number of vertices on the stack */
+        private int depth;
+        /** the next visit order */
+        private int visited;
+        /** the next group */
+        private int groups;
+
+        /**
+         * prepares to split a graph
+         *
+         * @param edges the edges, by source and destination
+         */
+        Groups(boolean[][] edges) {
+            int n = edges.length;
+            this.edges = edges;
+            this.group = new int[n];
+            this.order = new int[n];
+            this.low = new int[n];
+            this.stack = new int[n];
+            this.onStack = new boolean[n];
+            Arrays.fill(group, -1);
+            Arrays.fill(order, -1);
+        }
+
+        /**
+         * splits the graph
+         *
+         * @return the group of each vertex, numbered from 0
+         */
+        int[] assign() {
+            for (int v = 0; v < edges.length; v++) {
+                if (order[v] < 0) {
+                    visit(v);
+                }
+            }
+            return group;
+        }
+
+        /**
+         * visits a vertex and everything reachable from it
+         *
+         * @param v the vertex
+         */
+        private void visit(int v) {
+            order[v] = low[v] = visited++;
+            stack[depth++] = v;
+            onStack[v] = true;
+            for (int w = 0; w < edges.length; w++) {
+                if (!edges[v][w]) {
+                    continue;
+                }
+                if (order[w] < 0) {
+                    visit(w);
+                    low[v] = Math.min(low[v], low[w]);
+                }
+                else if (onStack[w]) {
+                    low[v] = Math.min(low[v], order[w]);
+                }
+            }
+            if (low[v] == order[v]) {
+                int w;
+                do {
+                    w = stack[--depth];
+                    onStack[w] = false;
+                    group[w] = groups;
+                } while (w != v);
+                groups++;
+            }
+        }
+    }
+}
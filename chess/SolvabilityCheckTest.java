@@ -0,0 +1,107 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+
+import java.util.Random;
+
+/**
+ * checks of {@link SolvabilityCheck}. run it with
+ * {@code java puzzles.chess.solver.SolvabilityCheckTest}; the first failed
+ * check throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class SolvabilityCheckTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ruledOutPositionsHaveNoSolution();
+        documentedCasesAreRuledOut();
+        System.out.println("SolvabilityCheckTest: ok");
+    }
+
+    /**
+     * every position the check rules out, among random boards and the
+     * positions reached by playing on them, has no solution when searched
+     * in full
+     */
+    private static void ruledOutPositionsHaveNoSolution() {
+        Random random = new Random(47);
+        int ruledOut = 0;
+        for (int trial = 0; trial < 2000; trial++) {
+            ChessBoard board = SolutionCounterTest.randomBoard(random, 3 + random.nextInt(3), 3 + random.nextInt(3),
+                    2 + random.nextInt(6));
+            int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+            while (true) {
+                if (SolvabilityCheck.reason(board) != null) {
+                    check(!solvable(new ChessBoard(board), new PositionSet(board)),
+                            "ruled out a solvable position: " + board.encode());
+                    ruledOut++;
+                }
+                int count = board.generateMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                board.makeMove(buffer[random.nextInt(count)]);
+            }
+        }
+        check(ruledOut > 0, "no position was ruled out");
+    }
+
+    /** the kinds of puzzle the check is meant to catch are caught */
+    private static void documentedCasesAreRuledOut() {
+        String[] unsolvable = {
+                "2x2:NN..",         // knights that never land on each other
+                "3x3:R....B...",    // a rook and a bishop that never meet
+                "3x3:......P.P",    // pawns with nothing above them
+                "3x3:C.......C|piece_C_leap_1,2" // leapers that never land on each other
+        };
+        for (String encoding : unsolvable) {
+            check(SolvabilityCheck.reason(ChessBoard.fromEncoding(encoding)) != null, "not ruled out: " + encoding);
+        }
+        check(SolvabilityCheck.reason(ChessBoard.fromEncoding("3x3:R.R......")) == null, "ruled out rooks in line");
+    }
+
+    /**
+     * searches a position in full
+     *
+     * @param board the position, played on and left as it was
+     * @param dead positions already found to have no solution
+     * @return true if some sequence of captures leaves one piece
+     */
+    private static boolean solvable(ChessBoard board, PositionSet dead) {
+        if (board.getPieceCount() <= 1) {
+            return board.getPieceCount() == 1;
+        }
+        if (dead.contains(board)) {
+            return false;
+        }
+        int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        int count = board.generateMoves(buffer);
+        for (int i = 0; i < count; i++) {
+            board.makeMove(buffer[i]);
+            boolean solved = solvable(board, dead);
+            board.unmakeMove(buffer[i]);
+            if (solved) {
+                return true;
+            }
+        }
+        dead.add(board);
+        return false;
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package puzzles.chess.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * results of earlier solves, kept on disk so solving the same board again
+ * is a lookup. each board is keyed by the engine that solved it and its
+ * {@link ChessBoard#encode()} text, since engines find different solutions
+ * and count different things, and maps to whether it can be solved, the
+ * captures of the solution and the counts the engine reported.
+ *
+ * entries are appended to a text file as they are stored or used, one line
+ * each with a checksum, so a crash can at worst leave a torn last line that
+ * is skipped on the next load. the file is in least recently used order;
+ * only the most recent entries are kept, and when the file holds twice that
+ * many lines it is rewritten to a temporary file and moved into place.
+ *
+ * @author Kristin Yap
+ */
+public class SolveCache implements Closeable {
+    /** default number of boards kept */
+    public static final int DEFAULT_CAPACITY = 10_000;
+    /** system property naming the cache file; without it there is no shared cache */
+    public static final String FILE_PROPERTY = "chess.cache";
+
+    /** the cache shared by the command line and the model, opened on first use */
+    private static SolveCache shared;
+    /** has opening the shared cache been tried? */
+    private static boolean sharedOpened;
+
+    /**
+     * the result of solving a board
+     *
+     * @param solvable can the board be solved?
+     * @param moves the captures of the shortest solution, empty if there is none
+     * @param totalConfigs configs the solver generated
+     * @param uniqueConfigs distinct configs the solver saw
+     * @param determined is the answer certain? a solver that ran short of
+     *                   memory and found no solution cannot say there is none
+     */
+    public record Result(boolean solvable, MoveList moves, int totalConfigs, int uniqueConfigs, boolean determined) {
+        /**
+         * a certain result
+         *
+         * @param solvable can the board be solved?
+         * @param moves the captures of the shortest solution, empty if there is none
+         * @param totalConfigs configs the solver generated
+         * @param uniqueConfigs distinct configs the solver saw
+         */
+        public Result(boolean solvable, MoveList moves, int totalConfigs, int uniqueConfigs) {
+            this(solvable, moves, totalConfigs, uniqueConfigs, true);
+        }
+    }
+
+    /** the cache file */
+    private final Path file;
+    /** number of boards kept */
+    private final int capacity;
+    /** results by {@link #key(String, String)}, least recently used first */
+    private final LinkedHashMap<String, Result> results;
+    /** appends to the cache file */
+    private BufferedWriter out;
+    /** lines in the cache file */
+    private int lines;
+    /** lookups that found a result */
+    private long hits;
+    /** lookups that did not */
+    private long misses;
+
+    /**
+     * opens a cache, creating the file if it does not exist
+     *
+     * @param file the cache file
+     * @param capacity the number of boards to keep
+     * @throws IOException if the file cannot be read or opened for writing
+     */
+    public SolveCache(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > SolveCache.this.capacity;
+            }
+        };
+        if (Files.exists(file)) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines++;
+                    parse(line);
+                }
+            }
+        }
+        else if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        out = append();
+    }
+
+    /**
+     * the cache used by {@link #solve(ChessConfig, String, Function)}. it is
+     * only used when the {@value #FILE_PROPERTY} system property names its file
+     *
+     * @return the cache, or null if no file is named or it cannot be opened
+     */
+    public static synchronized SolveCache shared() {
+        if (!sharedOpened) {
+            sharedOpened = true;
+            String name = System.getProperty(FILE_PROPERTY, "");
+            if (!name.isEmpty()) {
+                try {
+                    shared = new SolveCache(Path.of(name), DEFAULT_CAPACITY);
+                } catch (IOException ioe) {
+                    System.err.println("Solve cache unavailable: " + ioe.getMessage());
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * solves a board, looking it up in the shared cache first and storing
+     * the result there afterwards. undetermined results are not stored, so
+     * the board is tried again next time
+     *
+     * @param start the board
+     * @param engine the name of the engine the solver runs
+     * @param solver solves the board if the engine's result is not in the cache
+     * @return the result
+     */
+    public static Result solve(ChessConfig start, String engine, Function<ChessConfig, Result> solver) {
+        SolveCache cache = shared();
+        if (cache == null) {
+            return solver.apply(start);
+        }
+        String key = key(engine, new ChessBoard(start).encode());
+        synchronized (cache) {
+            Result known = cache.results.get(key);
+            if (known != null) {
+                try {
+                    return cache.get(key);
+                } catch (UncheckedIOException uioe) {
+                    return known;
+                }
+            }
+            cache.misses++;
+        }
+        Result result = solver.apply(start);
+        if (result.determined()) {
+            synchronized (cache) {
+                try {
+                    cache.put(key, result);
+                } catch (UncheckedIOException uioe) {
+                    System.err.println("Solve cache not updated: " + uioe.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the key of a board solved by an engine. the engine comes first, with
+     * its spaces replaced, and is separated from the encoding by a slash
+     *
+     * @param engine the name of the engine
+     * @param encoding the board's {@link ChessBoard#encode()} text
+     * @return the key
+     */
+    public static String key(String engine, String encoding) {
+        return engine.replace(' ', '-') + "/" + encoding;
+    }
+
+    /**
+     * looks up a board
+     *
+     * @param key the board's {@link #key(String, String)}
+     * @return its result, or null if it is not in the cache
+     * @throws UncheckedIOException if the use cannot be appended to the file
+     */
+    public Result get(String key) {
+        Result result = results.get(key);
+        if (result == null) {
+            misses++;
+        }
+        else {
+            hits++;
+            // move it to the end of the file too, so the order survives a restart
+            write(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * stores the result of a board
+     *
+     * @param key the board's {@link #key(String, String)}
+     * @param result its result
+     * @throws UncheckedIOException if the entry cannot be appended to the file
+     */
+    public void put(String key, Result result) {
+        results.put(key, result);
+        write(key, result);
+    }
+
+    /**
+     * appends an entry to the file, or rewrites the whole file, entry
+     * included, once it has grown to twice the capacity
+     *
+     * @param key the board
+     * @param result its result
+     */
+    private void write(String key, Result result) {
+        try {
+            if (lines >= 2 * capacity) {
+                compact();
+            }
+            else {
+                out.write(format(key, result));
+                out.newLine();
+                out.flush();
+                lines++;
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * rewrites the file with only the entries in the cache, replacing the
+     * old file in one step
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void compact() throws IOException {
+        out.close();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter rewrite = Files.newBufferedWriter(temp, StandardCharsets.US_ASCII)) {
+            for (Map.Entry<String, Result> entry : results.entrySet()) {
+                rewrite.write(format(entry.getKey(), entry.getValue()));
+                rewrite.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lines = results.size();
+        out = append();
+    }
+
+    /**
+     * opens the file for appending
+     *
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    private BufferedWriter append() throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * an entry as a line of the file: the key, 1 or 0 for solvable, the
+     * captures in base64, the two counts and a checksum of the rest, all
+     * separated by spaces
+     *
+     * @param key the board
+     * @param result its result
+     * @return the line
+     */
+    private static String format(String key, Result result) {
+        String body = key + " " + (result.solvable() ? 1 : 0) + " " + result.moves().toBase64()
+                + " " + result.totalConfigs() + " " + result.uniqueConfigs();
+        return body + " " + Long.toHexString(checksum(body));
+    }
+
+    /**
+     * reads a line of the file into the cache, skipping it if it is torn
+     * or damaged
+     *
+     * @param line the line
+     */
+    private void parse(String line) {
+        int last = line.lastIndexOf(' ');
+        String[] fields = line.split(" ", -1);
+        if (last < 0 || fields.length != 6) {
+            return;
+        }
+        try {
+            String body = line.substring(0, last);
+            if (Long.parseLong(fields[5], 16) != checksum(body)) {
+                return;
+            }
+            String key = fields[0];
+            int slash = key.indexOf('/');
+            if (slash <= 0) {
+                // written before entries were kept by engine
+                return;
+            }
+            String encoding = key.substring(slash + 1);
+            int x = encoding.indexOf('x');
+            int colon = encoding.indexOf(':');
+            int rows = Integer.parseInt(encoding.substring(0, x));
+            int cols = Integer.parseInt(encoding.substring(x + 1, colon));
+            results.put(key, new Result(fields[1].equals("1"), MoveList.fromBase64(rows, cols, fields[2]),
+                    Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // not a line this cache wrote
+        }
+    }
+
+    /**
+     * the checksum of a line
+     *
+     * @param body the line without its checksum
+     * @return the CRC-32 of its characters
+     */
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.US_ASCII));
+        return crc.getValue();
+    }
+
+    /** returns the number of boards in the cache */
+    public int size() {
+        return results.size();
+    }
+
+    /** returns the lookups that found a result */
+    public long getHits() {
+        return hits;
+    }
+
+    /** returns the lookups that did not */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** closes the file */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,211 @@
+package puzzles.chess.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * checks of {@link SolveCache}. run it with
+ * {@code java puzzles.chess.model.SolveCacheTest}; the first failed check
+ * throws an {@link AssertionError}. it names a temporary file as the
+ * shared cache, so it is run on its own
+ *
+ * @author Kristin Yap
+ */
+public class SolveCacheTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     * @throws IOException if a cache or puzzle file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        enginesKeepTheirOwnResults();
+        undeterminedResultsAreNotStored();
+        resultsSurviveAReload();
+        damagedLinesAreSkipped();
+        compactionKeepsTheRecentEntries();
+        System.out.println("SolveCacheTest: ok");
+    }
+
+    /**
+     * a board solved by one engine is solved again by another, and each
+     * engine's counts come back from the cache as that engine reported them
+     *
+     * @throws IOException if a file cannot be written
+     */
+    private static void enginesKeepTheirOwnResults() throws IOException {
+        Path file = cacheFile();
+        System.setProperty(SolveCache.FILE_PROPERTY, file.toString());
+        ChessConfig start = puzzle("2 2", "R R", ". .");
+        AtomicInteger runs = new AtomicInteger();
+        SolveCache.Result first = SolveCache.solve(start, "first engine", config -> counted(runs, config, 7, 5));
+        SolveCache.Result second = SolveCache.solve(start, "second engine", config -> counted(runs, config, 9, 0));
+        check(runs.get() == 2, "second engine was given the first engine's result");
+        check(SolveCache.solve(start, "first engine", config -> counted(runs, config, 1, 1)).equals(first),
+                "first engine's result not cached");
+        check(SolveCache.solve(start, "second engine", config -> counted(runs, config, 1, 1)).equals(second),
+                "second engine's result not cached");
+        check(runs.get() == 2, "cached results solved again");
+        check(SolveCache.shared().getHits() == 2, "hits not counted");
+    }
+
+    /**
+     * a result that is not certain is tried again next time
+     *
+     * @throws IOException if a puzzle file cannot be written
+     */
+    private static void undeterminedResultsAreNotStored() throws IOException {
+        ChessConfig start = puzzle("2 2", "R .", ". R");
+        SolveCache.Result undetermined = new SolveCache.Result(false, noMoves(start), 3, 0, false);
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            SolveCache.solve(start, "beam of 1", config -> {
+                runs.incrementAndGet();
+                return undetermined;
+            });
+        }
+        check(runs.get() == 2, "undetermined result was cached");
+    }
+
+    /**
+     * the solvability, captures and counts of each entry are read back from
+     * the file
+     *
+     * @throws IOException if a file cannot be written
+     */
+    private static void resultsSurviveAReload() throws IOException {
+        Path file = cacheFile();
+        ChessConfig start = puzzle("2 2", "R R", ". .");
+        SolveCache.Result result = counted(new AtomicInteger(), start, 12, 34);
+        String key = SolveCache.key("breadth first", new ChessBoard(start).encode());
+        try (SolveCache cache = new SolveCache(file, 10)) {
+            cache.put(key, result);
+        }
+        try (SolveCache cache = new SolveCache(file, 10)) {
+            check(result.equals(cache.get(key)), "result changed by a reload");
+            check(cache.get(SolveCache.key("depth first", new ChessBoard(start).encode())) == null,
+                    "result found under another engine");
+        }
+    }
+
+    /**
+     * a line whose checksum does not match, or that was torn off, is left
+     * out and the lines around it are read
+     *
+     * @throws IOException if a file cannot be written
+     */
+    private static void damagedLinesAreSkipped() throws IOException {
+        Path file = cacheFile();
+        ChessConfig start = puzzle("2 2", "R R", ". .");
+        try (SolveCache cache = new SolveCache(file, 10)) {
+            for (int i = 0; i < 3; i++) {
+                cache.put(SolveCache.key("engine " + i, "2x2:RR.."), counted(new AtomicInteger(), start, i, i));
+            }
+        }
+        List<String> lines = Files.readAllLines(file);
+        // change a count, leaving the checksum as it was
+        lines.set(1, lines.get(1).replace(" 1 1 ", " 1 2 "));
+        lines.add(lines.get(2).substring(0, lines.get(2).length() / 2));
+        Files.write(file, lines);
+        try (SolveCache cache = new SolveCache(file, 10)) {
+            check(cache.size() == 2, "damaged lines read: " + cache.size());
+            check(cache.get(SolveCache.key("engine 1", "2x2:RR..")) == null, "damaged entry read");
+            check(cache.get(SolveCache.key("engine 2", "2x2:RR..")).totalConfigs() == 2, "entry after it lost");
+        }
+    }
+
+    /**
+     * once the file holds twice the capacity it is rewritten with only the
+     * most recently used entries, which a reload finds
+     *
+     * @throws IOException if a file cannot be written
+     */
+    private static void compactionKeepsTheRecentEntries() throws IOException {
+        Path file = cacheFile();
+        ChessConfig start = puzzle("2 2", "R R", ". .");
+        int capacity = 3;
+        try (SolveCache cache = new SolveCache(file, capacity)) {
+            for (int i = 0; i < 10 * capacity; i++) {
+                cache.put(SolveCache.key("engine " + i, "2x2:RR.."), counted(new AtomicInteger(), start, i, i));
+                check(Files.readAllLines(file).size() <= 2 * capacity, "file not compacted after " + i);
+            }
+        }
+        check(Files.notExists(file.resolveSibling(file.getFileName() + ".tmp")), "temporary file left behind");
+        try (SolveCache cache = new SolveCache(file, capacity)) {
+            check(cache.size() == capacity, "entries kept: " + cache.size());
+            for (int i = 10 * capacity - capacity; i < 10 * capacity; i++) {
+                check(cache.get(SolveCache.key("engine " + i, "2x2:RR..")) != null, "recent entry " + i + " lost");
+            }
+        }
+    }
+
+    /**
+     * reads a puzzle from lines of a puzzle file
+     *
+     * @param lines the lines
+     * @return the starting config
+     * @throws IOException if the file cannot be written
+     */
+    private static ChessConfig puzzle(String... lines) throws IOException {
+        Path file = Files.createTempFile("chess", ".txt");
+        try {
+            Files.write(file, Arrays.asList(lines));
+            return new ChessConfig(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * a new empty file for a cache, deleted when the test ends
+     *
+     * @return the file
+     * @throws IOException if it cannot be created
+     */
+    private static Path cacheFile() throws IOException {
+        Path file = Files.createTempFile("solves", ".txt");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * a solvable result with given counts, counting the solves
+     *
+     * @param runs the solves so far
+     * @param start the board solved
+     * @param total configs generated
+     * @param unique distinct configs
+     * @return the result
+     */
+    private static SolveCache.Result counted(AtomicInteger runs, ChessConfig start, int total, int unique) {
+        runs.incrementAndGet();
+        int[] capture = {ChessBoard.encode(0, 1, 'R')};
+        return new SolveCache.Result(true, MoveList.of(start.getRows(), start.getCols(), capture, 1), total, unique);
+    }
+
+    /**
+     * no captures on a board
+     *
+     * @param start the board
+     * @return the empty list
+     */
+    private static MoveList noMoves(ChessConfig start) {
+        return MoveList.of(start.getRows(), start.getCols(), new int[0], 0);
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
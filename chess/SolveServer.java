@@ -0,0 +1,305 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.MoveList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a headless service that solves chess puzzles for other programs on this
+ * host. clients connect over TCP to the loopback address and send one
+ * request per line; every connection is served on its own virtual thread,
+ * so thousands of players can wait on small solves at once without a
+ * platform thread each. a request is
+ * <pre>
+ * SOLVE board [nodes=n] [millis=n]
+ * HINT board [nodes=n] [millis=n]
+ * </pre>
+ * where the board is a one line encoding from {@link ChessBoard#encode()},
+ * or "-" followed by the lines of a puzzle file and an empty line. each
+ * request is searched depth first within its budget of positions and time,
+ * which can only lower the server's, and is answered on one line:
+ * <pre>
+ * SOLVED captures moves nodes   the moves from {@link MoveList#toBase64()}, only the first for a hint
+ * UNSOLVABLE nodes             no positions searched if {@link SolvabilityCheck} rules it out
+ * BUDGET nodes                  the budget ran out before there was an answer
+ * ERROR message                 also for a board with more squares than the server takes
+ * </pre>
+ * late game positions are shared between requests of the same board size
+ * through {@link SubpositionCache}.
+ *
+ * this is the only class that needs Java 21, for its virtual threads; the
+ * rest of the solver and the model run on Java 17.
+ *
+ * @author Kristin Yap
+ */
+public class SolveServer implements Closeable {
+    /** most positions a request may search unless the server is started with another limit */
+    public static final long DEFAULT_NODES = 50_000_000;
+    /** most milliseconds a request may take unless the server is started with another limit */
+    public static final long DEFAULT_MILLIS = 10_000;
+    /** most squares a board may have unless the server is started with another limit */
+    public static final int DEFAULT_SQUARES = 256;
+    /** connections waiting to be accepted */
+    private static final int BACKLOG = 1024;
+
+    /** the listening socket */
+    private final ServerSocket server;
+    /** runs each connection on a virtual thread */
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    /** most positions a request may search */
+    private final long maxNodes;
+    /** most milliseconds a request may take */
+    private final long maxMillis;
+    /** most squares a board may have */
+    private final int maxSquares;
+    /** requests answered */
+    private final LongAdder served = new LongAdder();
+
+    /**
+     * opens the server's socket on the loopback address, taking boards of
+     * up to {@link #DEFAULT_SQUARES} squares
+     *
+     * @param port the port, or 0 for any free port
+     * @param maxNodes most positions a request may search
+     * @param maxMillis most milliseconds a request may take
+     * @throws IOException if the port cannot be opened
+     */
+    public SolveServer(int port, long maxNodes, long maxMillis) throws IOException {
+        this(port, maxNodes, maxMillis, DEFAULT_SQUARES);
+    }
+
+    /**
+     * opens the server's socket on the loopback address
+     *
+     * @param port the port, or 0 for any free port
+     * @param maxNodes most positions a request may search
+     * @param maxMillis most milliseconds a request may take
+     * @param maxSquares most squares a board may have. the search's memory
+     *                   grows with the pieces, so this keeps one request
+     *                   from taking the heap every other request needs
+     * @throws IOException if the port cannot be opened
+     */
+    public SolveServer(int port, long maxNodes, long maxMillis, int maxSquares) throws IOException {
+        if (maxNodes < 1 || maxMillis < 1 || maxSquares < 1) {
+            throw new IllegalArgumentException("Budgets must be positive");
+        }
+        this.server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+        this.maxSquares = maxSquares;
+    }
+
+    /** returns the port the server listens on */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** returns the number of requests answered */
+    public long getServed() {
+        return served.sum();
+    }
+
+    /** accepts connections on a virtual thread until the server is closed */
+    public void start() {
+        Thread.ofVirtual().name("solve-server").start(this::serve);
+    }
+
+    /** accepts connections until the server is closed */
+    public void serve() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> handle(socket));
+            }
+        } catch (IOException ioe) {
+            if (!server.isClosed()) {
+                System.err.println("Solve server stopped: " + ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * answers the requests of one client until it disconnects
+     *
+     * @param socket the client's connection
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                out.write(answer(line, in));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException ioe) {
+            // the client went away; nothing to answer
+        }
+    }
+
+    /**
+     * answers one request
+     *
+     * @param request the request line
+     * @param in the rest of the request, for puzzles sent as text
+     * @return the reply line
+     * @throws IOException if the connection fails
+     */
+    private String answer(String request, BufferedReader in) throws IOException {
+        String[] tokens = request.strip().split("\\s+");
+        try {
+            if (tokens.length < 2 || !(tokens[0].equals("SOLVE") || tokens[0].equals("HINT"))) {
+                return "ERROR expected SOLVE or HINT followed by a board";
+            }
+            long nodes = maxNodes;
+            long millis = maxMillis;
+            for (int i = 2; i < tokens.length; i++) {
+                if (tokens[i].startsWith("nodes=")) {
+                    nodes = Math.min(nodes, budget(tokens[i], "nodes="));
+                }
+                else if (tokens[i].startsWith("millis=")) {
+                    millis = Math.min(millis, budget(tokens[i], "millis="));
+                }
+                else {
+                    return "ERROR unknown option " + tokens[i];
+                }
+            }
+            ChessBoard board;
+            if (tokens[1].equals("-")) {
+                List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null && !line.isBlank()) {
+                    lines.add(line);
+                }
+                board = ChessBoard.fromText(lines);
+            }
+            else {
+                board = ChessBoard.fromEncoding(tokens[1]);
+            }
+            return solve(board, tokens[0].equals("HINT"), nodes, millis);
+        } catch (IllegalArgumentException iae) {
+            return "ERROR " + iae.getMessage();
+        } catch (RuntimeException re) {
+            // a request the solver could not handle; answer it rather than drop the connection
+            return "ERROR " + re;
+        } finally {
+            served.increment();
+        }
+    }
+
+    /**
+     * reads the budget of a request option
+     *
+     * @param token the option, such as nodes=1000
+     * @param name the option's name and equals sign
+     * @return the budget
+     * @throws IllegalArgumentException if it is not a number of at least 1
+     */
+    private static long budget(String token, String name) {
+        long value = Long.parseLong(token.substring(name.length()));
+        if (value < 1) {
+            throw new IllegalArgumentException("budget must be at least 1: " + token);
+        }
+        return value;
+    }
+
+    /**
+     * solves a puzzle within a budget
+     *
+     * @param board the puzzle
+     * @param hint true to answer with only the first capture
+     * @param nodes most positions to search
+     * @param millis most milliseconds to take
+     * @return the reply line
+     */
+    public String solve(ChessBoard board, boolean hint, long nodes, long millis) {
+        int squares = board.getRows() * board.getCols();
+        if (squares > maxSquares) {
+            return "ERROR board has " + squares + " squares, the most this server takes is " + maxSquares;
+        }
+        if (SolvabilityCheck.reason(board) != null) {
+            return "UNSOLVABLE 0";
+        }
+        ChessSearch search = new ChessSearch(board, MoveOrdering.LEAST_MOBILE);
+        search.useSharedCache(SubpositionCache.forBoard(board.getRows(), board.getCols(), board.getRules()));
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        search.stopWhen(() -> {
+            // searches do not block, so let other requests on this carrier run
+            Thread.yield();
+            return search.getNodes() >= nodes || System.nanoTime() >= deadline
+                    || Thread.currentThread().isInterrupted();
+        });
+        if (search.find()) {
+            MoveList moves = hint ? search.getMoveList().prefix(1) : search.getMoveList();
+            return "SOLVED " + moves.size() + " " + moves.toBase64() + " " + search.getNodes();
+        }
+        return (search.wasStopped() ? "BUDGET " : "UNSOLVABLE ") + search.getNodes();
+    }
+
+    /** stops accepting connections and drops the open ones */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * runs a server until the process is killed
+     *
+     * @param args optional --port=n, --nodes=n, --millis=n and --squares=n
+     */
+    public static void main(String[] args) {
+        int port = 0;
+        long nodes = DEFAULT_NODES;
+        long millis = DEFAULT_MILLIS;
+        int squares = DEFAULT_SQUARES;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                }
+                else if (arg.startsWith("--nodes=")) {
+                    nodes = Long.parseLong(arg.substring("--nodes=".length()));
+                }
+                else if (arg.startsWith("--millis=")) {
+                    millis = Long.parseLong(arg.substring("--millis=".length()));
+                }
+                else if (arg.startsWith("--squares=")) {
+                    squares = Integer.parseInt(arg.substring("--squares=".length()));
+                }
+                else {
+                    throw new IllegalArgumentException(arg);
+                }
+            }
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Usage: java SolveServer [--port=n] [--nodes=n] [--millis=n] [--squares=n]");
+            return;
+        }
+        try (SolveServer server = new SolveServer(port, nodes, millis, squares)) {
+            System.out.println("Solving on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+            server.serve();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot start solve server: " + e.getMessage());
+        }
+    }
+}
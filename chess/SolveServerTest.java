@@ -0,0 +1,120 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * checks of {@link SolveServer}. run it with
+ * {@code java puzzles.chess.solver.SolveServerTest}; the first failed
+ * check throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class SolveServerTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     * @throws IOException if the server cannot start
+     */
+    public static void main(String[] args) throws IOException {
+        budgetsBelowOneAreRejected();
+        overlappingStepsAreSolved();
+        oversizedBoardsAreRejected();
+        System.out.println("SolveServerTest: ok");
+    }
+
+    /**
+     * a request asking for no nodes or no time is answered with an error,
+     * and the connection still answers the next request
+     *
+     * @throws IOException if the server cannot start
+     */
+    private static void budgetsBelowOneAreRejected() throws IOException {
+        try (SolveServer server = new SolveServer(0, 1_000_000, 10_000)) {
+            server.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                for (String budget : new String[] {"nodes=0", "millis=0", "nodes=-5", "millis=-1"}) {
+                    String reply = ask(in, out, "SOLVE 2x2:RR.. " + budget);
+                    check(reply.startsWith("ERROR "), budget + " answered " + reply);
+                }
+                String reply = ask(in, out, "SOLVE 2x2:RR.. nodes=1 millis=1");
+                check(!reply.startsWith("ERROR "), "smallest budgets answered " + reply);
+            }
+        }
+    }
+
+    /**
+     * a full board of pieces whose definitions reach the same squares more
+     * than once is solved, not failed by an overfull move buffer
+     *
+     * @throws IOException if the server cannot start
+     */
+    private static void overlappingStepsAreSolved() throws IOException {
+        try (SolveServer server = new SolveServer(0, 1_000_000, 10_000)) {
+            String reply = server.solve(ChessBoard.fromEncoding("3x3:AAAAAAAAA|piece_A_Q_R"), false, 1_000_000, 10_000);
+            check(reply.startsWith("SOLVED "), "server answered " + reply);
+        }
+    }
+
+    /**
+     * a board larger than the server takes, here every square of the
+     * largest board holding a queen, is answered with an error before a
+     * search is built for it, and the connection still answers the next
+     * request
+     *
+     * @throws IOException if the server cannot start
+     */
+    private static void oversizedBoardsAreRejected() throws IOException {
+        try (SolveServer server = new SolveServer(0, 1_000_000, 10_000, 64)) {
+            server.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                String reply = ask(in, out, "SOLVE 32x32:" + "Q".repeat(32 * 32));
+                check(reply.startsWith("ERROR "), "oversized board answered " + reply);
+                reply = ask(in, out, "SOLVE 8x8:QQ" + ".".repeat(62));
+                check(reply.startsWith("SOLVED "), "board within the limit answered " + reply);
+            }
+        }
+    }
+
+    /**
+     * sends a request and reads its reply
+     *
+     * @param in the server's replies
+     * @param out the server's requests
+     * @param request the request line
+     * @return the reply line
+     * @throws IOException if the connection fails
+     */
+    private static String ask(BufferedReader in, Writer out, String request) throws IOException {
+        out.write(request + "\n");
+        out.flush();
+        String reply = in.readLine();
+        check(reply != null, "connection dropped after " + request);
+        return reply;
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
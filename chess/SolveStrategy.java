@@ -0,0 +1,174 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.MoveList;
+import puzzles.chess.model.SolveCache;
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * a way of solving a chess puzzle. every engine reports its answer the same
+ * way, so callers can switch between them; {@link StrategySelector} picks
+ * one from the features of the puzzle.
+ *
+ * @author Kristin Yap
+ */
+public interface SolveStrategy {
+    /**
+     * solves a puzzle
+     *
+     * @param start the starting config
+     * @return whether it can be solved, the captures of a solution, and the
+     *          configs the engine generated and kept, as each engine below
+     *          counts them
+     */
+    SolveCache.Result solve(ChessConfig start);
+
+    /** returns the name of the engine, for logs */
+    String name();
+
+    /**
+     * the common breadth first {@link Solver}, shortest paths and every
+     * config kept in memory. when the configs would fill more of the heap
+     * than {@link StrategySelector#breadthFirstConfigLimit()} allows, the
+     * search is given up and a {@link BeamSearch} of
+     * {@link BeamSearch#fallbackWidth()} tried instead. total configs are
+     * the neighbors generated, unique configs the configs kept
+     */
+    SolveStrategy BREADTH_FIRST = new SolveStrategy() {
+        @Override
+        public SolveCache.Result solve(ChessConfig start) {
+            Collection<Configuration> path = Solver.getShortestPath(start, StrategySelector.breadthFirstConfigLimit());
+            if (Solver.wasAbandoned()) {
+                System.getLogger(SolveStrategy.class.getName()).log(System.Logger.Level.WARNING,
+                        "Breadth first search kept {0} configs, falling back to a beam search",
+                        Solver.getUniqueConfigs());
+                return beam(BeamSearch.fallbackWidth()).solve(start);
+            }
+            return new SolveCache.Result(!path.isEmpty(), MoveList.of(List.copyOf(path)),
+                    Solver.getTotalConfigs(), Solver.getUniqueConfigs());
+        }
+
+        @Override
+        public String name() {
+            return "breadth first";
+        }
+    };
+
+    /**
+     * the {@link RankedSearch}, breadth first with a bit for every position
+     * of each layer instead of a map of configs. total configs are the
+     * captures generated, unique configs the positions set in the layers
+     */
+    SolveStrategy RANKED_BREADTH_FIRST = new SolveStrategy() {
+        @Override
+        public SolveCache.Result solve(ChessConfig start) {
+            RankedSearch search = new RankedSearch(start);
+            MoveList moves = search.solve();
+            return result(start, moves, search.getTotalConfigs(), search.getUniqueConfigs());
+        }
+
+        @Override
+        public String name() {
+            return "ranked breadth first";
+        }
+    };
+
+    /**
+     * the depth first {@link ChessSearch}, which keeps only dead positions
+     * and shares late game positions with other searches of the same size.
+     * total configs are the positions searched, unique configs the
+     * positions proven dead
+     *
+     * @param ordering the order captures are tried in
+     * @return the strategy
+     */
+    static SolveStrategy depthFirst(MoveOrdering ordering) {
+        return new SolveStrategy() {
+            @Override
+            public SolveCache.Result solve(ChessConfig start) {
+                ChessSearch search = new ChessSearch(start, ordering);
+                search.useSharedCache(SubpositionCache.forBoard(start.getRows(), start.getCols(), start.getRules()));
+                search.solve();
+                return result(start, search.getMoveList(), search.getNodes(), search.getDeadPositions());
+            }
+
+            @Override
+            public String name() {
+                return "depth first";
+            }
+        };
+    }
+
+    /**
+     * the {@link ParallelChessSearch}, which keeps dead positions in a table
+     * of fixed size. total configs are the positions searched by every
+     * task, unique configs the positions proven dead
+     *
+     * @param tableSize the number of dead positions to remember
+     * @return the strategy
+     */
+    static SolveStrategy parallel(int tableSize) {
+        return new SolveStrategy() {
+            @Override
+            public SolveCache.Result solve(ChessConfig start) {
+                ParallelChessSearch search = new ParallelChessSearch(start, ForkJoinPool.commonPool(), tableSize);
+                search.solve();
+                return result(start, search.getMoveList(), search.getNodes(), search.getDeadPositions());
+            }
+
+            @Override
+            public String name() {
+                return "parallel depth first";
+            }
+        };
+    }
+
+    /**
+     * the {@link BeamSearch}, which keeps a fixed number of positions in
+     * each layer. when it finds no solution after leaving positions out
+     * the result is undetermined. total configs are the positions
+     * generated, unique configs the positions kept in the layers
+     *
+     * @param width positions kept in each layer
+     * @return the strategy
+     */
+    static SolveStrategy beam(int width) {
+        return new SolveStrategy() {
+            @Override
+            public SolveCache.Result solve(ChessConfig start) {
+                BeamSearch search = new BeamSearch(start, width);
+                MoveList moves = search.solve();
+                SolveCache.Result result = result(start, moves, search.getNodes(), search.getKept());
+                return new SolveCache.Result(result.solvable(), result.moves(), result.totalConfigs(),
+                        result.uniqueConfigs(), search.isDetermined());
+            }
+
+            @Override
+            public String name() {
+                return "beam of " + width;
+            }
+        };
+    }
+
+    /**
+     * the result of a search that returns its solution as captures
+     *
+     * @param start the starting config
+     * @param moves the solution, or null if there is none
+     * @param nodes positions searched
+     * @param kept positions remembered
+     * @return the result
+     */
+    private static SolveCache.Result result(ChessConfig start, MoveList moves, long nodes, long kept) {
+        if (moves == null) {
+            moves = MoveList.of(start.getRows(), start.getCols(), new int[0], 0);
+        }
+        return new SolveCache.Result(moves.size() > 0 || start.isSolution(), moves,
+                (int) Math.min(Integer.MAX_VALUE, nodes), (int) Math.min(Integer.MAX_VALUE, kept));
+    }
+}
@@ -0,0 +1,382 @@
+package puzzles.chess.model;
+
+import java.util.Arrays;
+
+/**
+ * numbers every position a puzzle could reach, densely and without gaps.
+ * a capture empties a square and never fills one, so every position has
+ * its pieces on some of the squares that started with one, its slots, and
+ * keeps some of the pieces it started with. a position with k pieces is a
+ * choice of k of the n slots together with the kinds of piece on them, in
+ * slot order, using no kind more often than the start did.
+ *
+ * the positions with k pieces form a layer, ranked from 0 to
+ * {@link #layerSize(int)}: the choice of slots is ranked by the
+ * combinatorial number system and the kinds by counting the sequences that
+ * come before them, and the slot rank is the high part. layers are laid out
+ * one after another, fewest pieces first, to give {@link #rank(ChessBoard)}.
+ * layers too large to number in a long are sized {@link Long#MAX_VALUE} and
+ * cannot be ranked.
+ *
+ * @author Kristin Yap
+ */
+public final class StateRanking {
+    /** the most count vectors the sequence table is built for */
+    private static final int MAX_VECTORS = 1 << 16;
+
+    /** squares that started with a piece */
+    private final int[] slotSquares;
+    /** board cols */
+    private final int cols;
+    /** the kinds of piece, in the order their sequences are ranked */
+    private final char[] kinds;
+    /** kind index of each piece, -1 for pieces the puzzle does not start with */
+    private final int[] kindOf = new int[PieceRules.SYMBOLS];
+    /** how many of each kind the puzzle starts with */
+    private final int[] counts;
+    /** place value of each kind in a count vector index */
+    private final int[] strides;
+    /** binomial coefficients by n and k, {@link Long#MAX_VALUE} once they overflow */
+    private final long[][] binomials;
+    /**
+     * sequences of each length that use no more of each kind than a count
+     * vector allows, by length and vector index
+     */
+    private final long[][] sequences;
+    /** positions with each number of pieces */
+    private final long[] layerSizes;
+    /** rank of the first position with each number of pieces */
+    private final long[] offsets;
+
+    /**
+     * creates the ranking for the puzzle a config starts
+     *
+     * @param start the starting config
+     */
+    public StateRanking(ChessConfig start) {
+        this(new ChessBoard(start));
+    }
+
+    /**
+     * creates the ranking for the puzzle a board starts
+     *
+     * @param start the starting position
+     * @throws IllegalArgumentException if the puzzle has too many kinds of
+     *                                  piece for the counting tables
+     */
+    public StateRanking(ChessBoard start) {
+        slotSquares = start.getSlotSquares();
+        cols = start.getCols();
+        int n = slotSquares.length;
+        StringBuilder found = new StringBuilder();
+        Arrays.fill(kindOf, -1);
+        int[] seen = new int[PieceRules.SYMBOLS];
+        for (int square : slotSquares) {
+            char piece = start.getCell(square);
+            if (seen[piece]++ == 0) {
+                found.append(piece);
+            }
+        }
+        kinds = found.toString().toCharArray();
+        Arrays.sort(kinds);
+        counts = new int[kinds.length];
+        strides = new int[kinds.length];
+        long vectors = 1;
+        for (int kind = 0; kind < kinds.length; kind++) {
+            kindOf[kinds[kind]] = kind;
+            counts[kind] = seen[kinds[kind]];
+            strides[kind] = (int) vectors;
+            vectors *= counts[kind] + 1;
+            if (vectors > MAX_VECTORS) {
+                throw new IllegalArgumentException("Too many kinds of piece to rank: " + kinds.length);
+            }
+        }
+
+        binomials = new long[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            binomials[i][0] = 1;
+            for (int k = 1; k <= i; k++) {
+                binomials[i][k] = add(binomials[i - 1][k - 1], binomials[i - 1][k]);
+            }
+        }
+        sequences = new long[n + 1][(int) vectors];
+        Arrays.fill(sequences[0], 1);
+        for (int length = 1; length <= n; length++) {
+            for (int vector = 0; vector < vectors; vector++) {
+                long total = 0;
+                for (int kind = 0; kind < kinds.length; kind++) {
+                    if (available(vector, kind) > 0) {
+                        total = add(total, sequences[length - 1][vector - strides[kind]]);
+                    }
+                }
+                sequences[length][vector] = total;
+            }
+        }
+        int full = (int) vectors - 1;
+        layerSizes = new long[n + 1];
+        offsets = new long[n + 2];
+        for (int k = 0; k <= n; k++) {
+            layerSizes[k] = multiply(binomials[n][k], sequences[k][full]);
+            offsets[k + 1] = add(offsets[k], layerSizes[k]);
+        }
+    }
+
+    /**
+     * adds two counts, sticking at {@link Long#MAX_VALUE}
+     *
+     * @param a a count
+     * @param b another count
+     * @return the sum
+     */
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * multiplies two counts, sticking at {@link Long#MAX_VALUE}
+     *
+     * @param a a count
+     * @param b another count
+     * @return the product
+     */
+    private static long multiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long product = a * b;
+        return high != 0 || product < 0 ? Long.MAX_VALUE : product;
+    }
+
+    /**
+     * how many of a kind a count vector allows
+     *
+     * @param vector the vector index
+     * @param kind the kind
+     * @return the count
+     */
+    private int available(int vector, int kind) {
+        return vector / strides[kind] % (counts[kind] + 1);
+    }
+
+    /** returns the number of squares that started with a piece */
+    public int getSlotCount() {
+        return slotSquares.length;
+    }
+
+    /**
+     * the number of positions with a number of pieces
+     *
+     * @param pieces the number of pieces
+     * @return the size of the layer, {@link Long#MAX_VALUE} if it is too large to rank
+     */
+    public long layerSize(int pieces) {
+        return layerSizes[pieces];
+    }
+
+    /**
+     * the number of positions with at most a number of pieces, which is also
+     * the rank of the first position with one more
+     *
+     * @param pieces the number of pieces
+     * @return the count, {@link Long#MAX_VALUE} if it is too large to rank
+     */
+    public long size(int pieces) {
+        return offsets[pieces + 1];
+    }
+
+    /**
+     * ranks a position among every position of the puzzle
+     *
+     * @param board a position of the puzzle
+     * @return its rank, from 0 to {@link #size(int)} of the starting piece count
+     * @throws IllegalStateException if the ranks up to its layer do not fit in a long
+     */
+    public long rank(ChessBoard board) {
+        int pieces = board.getPieceCount();
+        if (offsets[pieces + 1] == Long.MAX_VALUE) {
+            throw new IllegalStateException("Too many positions to rank with " + pieces + " pieces");
+        }
+        return offsets[pieces] + layerRank(board);
+    }
+
+    /**
+     * ranks a position among the positions with as many pieces
+     *
+     * @param board a position of the puzzle
+     * @return its rank, from 0 to {@link #layerSize(int)}
+     * @throws IllegalStateException if the layer is too large to rank
+     */
+    public long layerRank(ChessBoard board) {
+        char[] pieces = new char[slotSquares.length];
+        for (int slot = 0; slot < pieces.length; slot++) {
+            pieces[slot] = board.getCell(slotSquares[slot]);
+        }
+        return layerRank(pieces);
+    }
+
+    /**
+     * ranks a config among every position of its puzzle
+     *
+     * @param config a config of the puzzle
+     * @return its rank
+     * @throws IllegalStateException if the ranks up to its layer do not fit in a long
+     */
+    public long rank(ChessConfig config) {
+        char[] pieces = new char[slotSquares.length];
+        int count = 0;
+        for (int slot = 0; slot < pieces.length; slot++) {
+            pieces[slot] = config.getCell(slotSquares[slot] / cols, slotSquares[slot] % cols);
+            if (pieces[slot] != ChessBoard.EMPTY) {
+                count++;
+            }
+        }
+        if (offsets[count + 1] == Long.MAX_VALUE) {
+            throw new IllegalStateException("Too many positions to rank with " + count + " pieces");
+        }
+        return offsets[count] + layerRank(pieces);
+    }
+
+    /**
+     * ranks the pieces on the slots among the positions with as many pieces
+     *
+     * @param pieces the piece on each slot, {@link ChessBoard#EMPTY} for none
+     * @return the rank within the layer
+     * @throws IllegalArgumentException if a piece is not one the puzzle starts with
+     * @throws IllegalStateException if the layer is too large to rank
+     */
+    public long layerRank(char[] pieces) {
+        int k = 0;
+        for (char piece : pieces) {
+            if (piece != ChessBoard.EMPTY) {
+                k++;
+            }
+        }
+        if (layerSizes[k] == Long.MAX_VALUE) {
+            throw new IllegalStateException("Too many positions to rank with " + k + " pieces");
+        }
+        long slots = 0;
+        long kindRank = 0;
+        int vector = sequences[0].length - 1;
+        int placed = 0;
+        for (int slot = 0; slot < pieces.length; slot++) {
+            char piece = pieces[slot];
+            if (piece == ChessBoard.EMPTY) {
+                continue;
+            }
+            int kind = piece < kindOf.length ? kindOf[piece] : -1;
+            if (kind < 0 || available(vector, kind) == 0) {
+                throw new IllegalArgumentException("Not a position of this puzzle: too many " + piece);
+            }
+            placed++;
+            slots += binomials[slot][placed];
+            int remaining = k - placed;
+            for (int smaller = 0; smaller < kind; smaller++) {
+                if (available(vector, smaller) > 0) {
+                    kindRank += sequences[remaining][vector - strides[smaller]];
+                }
+            }
+            vector -= strides[kind];
+        }
+        return slots * sequences[k][sequences[0].length - 1] + kindRank;
+    }
+
+    /**
+     * the position with a rank within a layer
+     *
+     * @param pieces the number of pieces
+     * @param rank the rank within the layer
+     * @param into filled in with the piece on each slot, {@link ChessBoard#EMPTY} for none
+     * @throws IllegalArgumentException if the rank is outside the layer
+     */
+    public void unrank(int pieces, long rank, char[] into) {
+        if (rank < 0 || rank >= layerSizes[pieces] || layerSizes[pieces] == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("No position " + rank + " with " + pieces + " pieces");
+        }
+        int full = sequences[0].length - 1;
+        long kindRank = rank % sequences[pieces][full];
+        long slots = rank / sequences[pieces][full];
+        Arrays.fill(into, ChessBoard.EMPTY);
+        // the highest chosen slot is the largest one whose binomial fits
+        int[] chosen = new int[pieces];
+        int slot = slotSquares.length;
+        for (int placed = pieces; placed > 0; placed--) {
+            do {
+                slot--;
+            } while (binomials[slot][placed] > slots);
+            slots -= binomials[slot][placed];
+            chosen[placed - 1] = slot;
+        }
+        int vector = full;
+        for (int placed = 0; placed < pieces; placed++) {
+            int remaining = pieces - placed - 1;
+            for (int kind = 0; kind < kinds.length; kind++) {
+                if (available(vector, kind) == 0) {
+                    continue;
+                }
+                long following = sequences[remaining][vector - strides[kind]];
+                if (kindRank < following) {
+                    into[chosen[placed]] = kinds[kind];
+                    vector -= strides[kind];
+                    break;
+                }
+                kindRank -= following;
+            }
+        }
+    }
+
+    /**
+     * sets a board to the position with a rank within a layer
+     *
+     * @param pieces the number of pieces
+     * @param rank the rank within the layer
+     * @param board a board of the puzzle
+     */
+    public void unrank(int pieces, long rank, ChessBoard board) {
+        char[] slots = new char[slotSquares.length];
+        unrank(pieces, rank, slots);
+        board.setSlots(slots);
+    }
+
+    /**
+     * sets a board to the position with a rank among every position
+     *
+     * @param rank the rank
+     * @param board a board of the puzzle
+     * @throws IllegalArgumentException if no position has the rank
+     */
+    public void unrank(long rank, ChessBoard board) {
+        board.setSlots(unrank(rank));
+    }
+
+    /**
+     * sets a config to the position with a rank among every position
+     *
+     * @param rank the rank
+     * @param config a config of the puzzle, changed in place
+     * @throws IllegalArgumentException if no position has the rank
+     */
+    public void unrank(long rank, ChessConfig config) {
+        char[] slots = unrank(rank);
+        for (int slot = 0; slot < slots.length; slot++) {
+            config.setCell(slotSquares[slot] / cols, slotSquares[slot] % cols, slots[slot]);
+        }
+    }
+
+    /**
+     * the pieces on the slots of the position with a rank
+     *
+     * @param rank the rank among every position
+     * @return the piece on each slot
+     */
+    private char[] unrank(long rank) {
+        int pieces = 0;
+        while (pieces < slotSquares.length && rank >= offsets[pieces + 1]) {
+            pieces++;
+        }
+        if (rank < 0 || rank >= offsets[pieces + 1]) {
+            throw new IllegalArgumentException("No position " + rank);
+        }
+        char[] slots = new char[slotSquares.length];
+        unrank(pieces, rank - offsets[pieces], slots);
+        return slots;
+    }
+}
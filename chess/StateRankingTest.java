@@ -0,0 +1,210 @@
+package puzzles.chess.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * checks of {@link StateRanking}. run it with
+ * {@code java puzzles.chess.model.StateRankingTest}; the first failed
+ * check throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class StateRankingTest {
+    /** pieces put on the random boards */
+    private static final String PIECES = "KQRBNP";
+
+    /**
+     * runs every check
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        Random random = new Random(50);
+        for (int trial = 0; trial < 200; trial++) {
+            ChessBoard start = randomBoard(random);
+            StateRanking ranking = new StateRanking(start);
+            layersHoldEveryPositionOnce(start, ranking);
+            ranksRoundTrip(start, ranking);
+            playedPositionsRoundTrip(start, ranking, random);
+        }
+        System.out.println("StateRankingTest: ok");
+    }
+
+    /**
+     * each layer is as large as the number of positions with that many
+     * pieces, counted by brute force, and unranking it gives each of them
+     * once, each ranking back to where it came from
+     *
+     * @param start the starting position
+     * @param ranking its ranking
+     */
+    private static void layersHoldEveryPositionOnce(ChessBoard start, StateRanking ranking) {
+        int slots = ranking.getSlotCount();
+        long[] expected = new long[slots + 1];
+        countPositions(startCounts(start), new int[PieceRules.SYMBOLS], slots, 0, 0, expected);
+        char[] pieces = new char[slots];
+        for (int k = 1; k <= slots; k++) {
+            check(ranking.layerSize(k) == expected[k],
+                    "layer " + k + " of " + start.encode() + " has " + ranking.layerSize(k) + ", not " + expected[k]);
+            Set<String> seen = new HashSet<>();
+            for (long rank = 0; rank < ranking.layerSize(k); rank++) {
+                ranking.unrank(k, rank, pieces);
+                check(pieceCount(pieces) == k, "unranked into another layer on " + start.encode());
+                check(ranking.layerRank(pieces) == rank, "rank " + rank + " of layer " + k + " of " + start.encode()
+                        + " came back as " + ranking.layerRank(pieces));
+                check(seen.add(String.valueOf(pieces)), "position unranked twice on " + start.encode());
+            }
+        }
+    }
+
+    /**
+     * every rank among all the positions sets a board that ranks back to it
+     *
+     * @param start the starting position
+     * @param ranking its ranking
+     */
+    private static void ranksRoundTrip(ChessBoard start, StateRanking ranking) {
+        ChessBoard board = new ChessBoard(start);
+        long size = ranking.size(ranking.getSlotCount());
+        check(size == ranking.size(0) + total(ranking), "layers do not add up on " + start.encode());
+        for (long rank = ranking.size(0); rank < size; rank++) {
+            ranking.unrank(rank, board);
+            check(ranking.rank(board) == rank, "rank " + rank + " of " + start.encode() + " came back as "
+                    + ranking.rank(board));
+        }
+    }
+
+    /**
+     * positions reached by capturing rank to a board with the same pieces
+     *
+     * @param start the starting position
+     * @param ranking its ranking
+     * @param random picks the captures
+     */
+    private static void playedPositionsRoundTrip(ChessBoard start, StateRanking ranking, Random random) {
+        ChessBoard board = new ChessBoard(start);
+        ChessBoard unranked = new ChessBoard(start);
+        int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        int count;
+        do {
+            long rank = ranking.rank(board);
+            ranking.unrank(rank, unranked);
+            check(unranked.encode().equals(board.encode()), "rank " + rank + " is " + unranked.encode()
+                    + ", not " + board.encode());
+            count = board.generateMoves(buffer);
+            if (count > 0) {
+                board.makeMove(buffer[random.nextInt(count)]);
+            }
+        } while (count > 0);
+    }
+
+    /**
+     * counts the positions by their number of pieces, trying every piece
+     * the start has left, or none, on each slot
+     *
+     * @param counts how many of each piece the start has
+     * @param used how many of each piece are placed so far
+     * @param slots the number of slots
+     * @param slot the slot to fill next
+     * @param pieces the pieces placed so far
+     * @param found incremented for each position, by its number of pieces
+     */
+    private static void countPositions(int[] counts, int[] used, int slots, int slot, int pieces, long[] found) {
+        if (slot == slots) {
+            found[pieces]++;
+            return;
+        }
+        countPositions(counts, used, slots, slot + 1, pieces, found);
+        for (char piece = 0; piece < counts.length; piece++) {
+            if (used[piece] < counts[piece]) {
+                used[piece]++;
+                countPositions(counts, used, slots, slot + 1, pieces + 1, found);
+                used[piece]--;
+            }
+        }
+    }
+
+    /**
+     * how many of each piece a position has
+     *
+     * @param board the position
+     * @return the counts, by piece
+     */
+    private static int[] startCounts(ChessBoard board) {
+        int[] counts = new int[PieceRules.SYMBOLS];
+        for (int square : board.getSlotSquares()) {
+            counts[board.getCell(square)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * the positions with at least one piece
+     *
+     * @param ranking the ranking
+     * @return the sum of the layer sizes
+     */
+    private static long total(StateRanking ranking) {
+        long total = 0;
+        for (int k = 1; k <= ranking.getSlotCount(); k++) {
+            total += ranking.layerSize(k);
+        }
+        return total;
+    }
+
+    /**
+     * the pieces on slots
+     *
+     * @param pieces the piece on each slot
+     * @return the number that are not empty
+     */
+    private static int pieceCount(char[] pieces) {
+        int count = 0;
+        for (char piece : pieces) {
+            if (piece != ChessBoard.EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * a random board of 2 to 4 rows and cols with 1 to 7 pieces of up to
+     * 3 kinds
+     *
+     * @param random the source of the board
+     * @return the board
+     */
+    private static ChessBoard randomBoard(Random random) {
+        int rows = 2 + random.nextInt(3);
+        int cols = 2 + random.nextInt(3);
+        int pieces = 1 + random.nextInt(Math.min(7, rows * cols));
+        int offset = random.nextInt(PIECES.length());
+        int kinds = 1 + random.nextInt(3);
+        char[] cells = new char[rows * cols];
+        Arrays.fill(cells, ChessBoard.EMPTY);
+        for (int placed = 0; placed < pieces; ) {
+            int square = random.nextInt(cells.length);
+            if (cells[square] == ChessBoard.EMPTY) {
+                cells[square] = PIECES.charAt((offset + random.nextInt(kinds)) % PIECES.length());
+                placed++;
+            }
+        }
+        return ChessBoard.fromEncoding(rows + "x" + cols + ":" + String.valueOf(cells));
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
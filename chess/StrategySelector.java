@@ -0,0 +1,166 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.ChessConfig;
+import puzzles.chess.model.SolveCache;
+import puzzles.chess.model.StateRanking;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * picks a {@link SolveStrategy} from the features of a puzzle. the size of
+ * the search tree is estimated by a short probe: a few random capture
+ * sequences are played from the start and Knuth's estimator turns the
+ * number of captures seen at each depth into a tree size, capped by the
+ * number of ways the pieces can sit on their squares. small trees are
+ * solved breadth first, with a bitset for each layer when a bit for every
+ * position the {@link StateRanking} numbers fits in memory. larger ones are searched in parallel when there is
+ * more than one core, and otherwise depth first with a set of dead
+ * positions, or with a fixed size table if that set might not fit in
+ * memory. the choice is logged. a breadth first solve that outgrows half
+ * the heap anyway falls back to a {@link BeamSearch}.
+ *
+ * @author Kristin Yap
+ */
+public class StrategySelector {
+    /**
+     * trees up to this size are solved breadth first. captures reach the
+     * same position in many orders, so the distinct configs the breadth
+     * first solver keeps are a small fraction of the tree: the bundled
+     * puzzles keep about 1 in 300
+     */
+    public static final long BREADTH_FIRST_LIMIT = 20_000_000;
+    /** random capture sequences played by the probe */
+    private static final int PROBES = 32;
+    /** bytes a dead position takes in the depth first search */
+    private static final int BYTES_PER_POSITION = 16;
+    /**
+     * bytes a config takes in the breadth first solver, counting its entry
+     * in the map of predecessors and its place in the queue. the bundled
+     * puzzles measure about 150
+     */
+    private static final int BYTES_PER_CONFIG = 160;
+
+    /** where choices are logged */
+    private static final System.Logger LOGGER = System.getLogger(StrategySelector.class.getName());
+
+    /**
+     * the strategy picked for a puzzle and why
+     *
+     * @param strategy the strategy
+     * @param memory "bitsets", "all configs", "dead positions" or "fixed table"
+     * @param pieces the number of each kind of piece
+     * @param area board rows times cols
+     * @param branching average captures available along the probes
+     * @param estimate estimated size of the search tree
+     */
+    public record Choice(SolveStrategy strategy, String memory, Map<Character, Integer> pieces,
+                         int area, double branching, long estimate) {
+        @Override
+        public String toString() {
+            return String.format("%s (%s) for %d pieces %s on %d squares, branching %.1f, ~%d tree nodes",
+                    strategy.name(), memory, pieces.values().stream().mapToInt(Integer::intValue).sum(),
+                    pieces, area, branching, estimate);
+        }
+    }
+
+    /**
+     * picks a strategy for a puzzle and logs it
+     *
+     * @param start the starting config
+     * @return the choice
+     */
+    public static Choice select(ChessConfig start) {
+        ChessBoard board = new ChessBoard(start);
+        Map<Character, Integer> pieces = new TreeMap<>();
+        for (int square = 0; square < start.getRows() * start.getCols(); square++) {
+            char piece = board.getCell(square);
+            if (piece != ChessBoard.EMPTY) {
+                pieces.merge(piece, 1, Integer::sum);
+            }
+        }
+        int area = start.getRows() * start.getCols();
+        Random random = new Random(board.hash());
+        int[] buffer = new int[ChessBoard.maxMoves(board.getPieceCount())];
+        double total = 0;
+        long captures = 0;
+        long positions = 0;
+        for (int probe = 0; probe < PROBES; probe++) {
+            ChessBoard walk = new ChessBoard(board);
+            double width = 1;
+            double size = 1;
+            int count;
+            while ((count = walk.generateMoves(buffer)) > 0) {
+                captures += count;
+                positions++;
+                width *= count;
+                size += width;
+                walk.makeMove(buffer[random.nextInt(count)]);
+            }
+            total += size;
+        }
+        // each square the pieces started on is empty or holds one of the kinds
+        double placements = Math.pow(pieces.size() + 1, board.getPieceCount());
+        long estimate = (long) Math.min(Math.min(total / PROBES, placements), Long.MAX_VALUE);
+        double branching = positions == 0 ? 0 : (double) captures / positions;
+
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        Choice choice;
+        long bits = estimate <= BREADTH_FIRST_LIMIT ? rankedBits(board) : Long.MAX_VALUE;
+        if (bits <= budget * Byte.SIZE) {
+            choice = new Choice(SolveStrategy.RANKED_BREADTH_FIRST, "bitsets of " + bits + " bits",
+                    pieces, area, branching, estimate);
+        }
+        else if (estimate <= BREADTH_FIRST_LIMIT) {
+            choice = new Choice(SolveStrategy.BREADTH_FIRST, "all configs", pieces, area, branching, estimate);
+        }
+        else if (estimate <= budget / BYTES_PER_POSITION && Runtime.getRuntime().availableProcessors() == 1) {
+            choice = new Choice(SolveStrategy.depthFirst(MoveOrdering.LEAST_MOBILE), "dead positions",
+                    pieces, area, branching, estimate);
+        }
+        else {
+            long fits = Math.min(ParallelChessSearch.DEFAULT_TABLE_SIZE, Math.min(estimate, budget / Long.BYTES));
+            int tableSize = Integer.highestOneBit((int) Math.max(1024, fits));
+            choice = new Choice(SolveStrategy.parallel(tableSize), "fixed table of " + tableSize,
+                    pieces, area, branching, estimate);
+        }
+        LOGGER.log(System.Logger.Level.DEBUG, "Solving with {0}", choice);
+        return choice;
+    }
+
+    /**
+     * the bits a {@link RankedSearch} of a board could take
+     *
+     * @param board the starting position
+     * @return the bits, or {@link Long#MAX_VALUE} if its positions cannot be ranked
+     */
+    private static long rankedBits(ChessBoard board) {
+        try {
+            return RankedSearch.bitsNeeded(new StateRanking(board));
+        } catch (IllegalArgumentException iae) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * the most configs the breadth first solver may keep before it is
+     * estimated to fill half the heap
+     *
+     * @return the limit
+     */
+    public static int breadthFirstConfigLimit() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / BYTES_PER_CONFIG);
+    }
+
+    /**
+     * picks a strategy for a puzzle and solves it
+     *
+     * @param start the starting config
+     * @return the result
+     */
+    public static SolveCache.Result solve(ChessConfig start) {
+        return select(start).strategy().solve(start);
+    }
+}
@@ -0,0 +1,260 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.PieceRules;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * late game positions shared by every search in the process. puzzles of
+ * the same size often reach the same few-piece positions, so what one
+ * search learns about them, that they are dead or which capture solves
+ * them, is kept here for the next. positions are keyed by
+ * {@link ChessBoard#hash()}, which depends only on the pieces and their
+ * squares. each entry also keeps 32 bits of
+ * {@link ChessBoard#checkHash()}, and a lookup whose check does not match
+ * is a miss, so two positions whose hashes collide are not mistaken for
+ * each other and a live position is not called dead. there is one cache
+ * for each board size and set of piece
+ * rules. only the {@link #MAX_SCOPES} most recently used of those are kept,
+ * so a stream of puzzles of new sizes or rules cannot fill the heap.
+ *
+ * each cache holds a fixed number of entries in sets of {@link #WAYS}. a
+ * position can only live in the set its hash picks, and when the set is
+ * full an entry is evicted by the CLOCK rule: a hand sweeps the set,
+ * clearing the referenced bit of entries used since it last passed and
+ * evicting the first entry that was not. sets are locked in stripes so
+ * searches on other threads rarely wait for each other.
+ *
+ * @author Kristin Yap
+ */
+public class SubpositionCache {
+    /** the value stored for a position with no solution */
+    public static final int DEAD = -1;
+    /** the value returned for a position that is not in the cache */
+    public static final int MISSING = -2;
+    /** default number of positions in each cache */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    /** fewest pieces worth caching, below this searching is cheaper than looking up */
+    public static final int MIN_PIECES = 3;
+    /** most pieces worth caching, above this positions rarely repeat across puzzles */
+    public static final int MAX_PIECES = 6;
+    /** most caches kept at once, by board size and piece rules */
+    public static final int MAX_SCOPES = 4;
+    /** entries in each set */
+    private static final int WAYS = 8;
+    /** lock stripes */
+    private static final int STRIPES = 64;
+
+    /** the caches, by board size and piece rules, least recently used first */
+    private static final Map<String, SubpositionCache> CACHES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SubpositionCache> eldest) {
+            return size() > MAX_SCOPES;
+        }
+    };
+
+    /** keys of the entries, set by set */
+    private final long[] keys;
+    /** low bits of the check hash of each entry */
+    private final int[] checks;
+    /** values of the entries: {@link #DEAD} or the encoded capture that solves the position */
+    private final int[] values;
+    /** is each entry in use? */
+    private final boolean[] used;
+    /** has each entry been looked up since the clock hand last passed it? */
+    private final boolean[] referenced;
+    /** the clock hand of each set */
+    private final byte[] hands;
+    /** the number of sets, a power of two */
+    private final int sets;
+    /** locks, each guarding every {@link #STRIPES}th set */
+    private final Object[] locks = new Object[STRIPES];
+    /** lookups that found the position */
+    private final LongAdder hits = new LongAdder();
+    /** lookups that did not */
+    private final LongAdder misses = new LongAdder();
+    /** positions stored */
+    private final LongAdder stores = new LongAdder();
+    /** positions evicted to make room */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * creates a cache
+     *
+     * @param capacity the number of positions to keep, rounded up to a
+     *                 power of two of at least {@link #WAYS}
+     */
+    public SubpositionCache(int capacity) {
+        int size = capacity <= WAYS ? WAYS : Integer.highestOneBit(capacity - 1) << 1;
+        this.sets = size / WAYS;
+        this.keys = new long[size];
+        this.checks = new int[size];
+        this.values = new int[size];
+        this.used = new boolean[size];
+        this.referenced = new boolean[size];
+        this.hands = new byte[sets];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * the shared cache for puzzles of a board size and piece rules,
+     * created on first use. creating one drops the least recently used
+     * cache once {@link #MAX_SCOPES} are kept; searches already using it
+     * carry on with it
+     *
+     * @param rows board rows
+     * @param cols board cols
+     * @param rules how the pieces capture
+     * @return the cache
+     */
+    public static SubpositionCache forBoard(int rows, int cols, PieceRules rules) {
+        String scope = rows + "x" + cols + (rules.isStandard() ? "" : "|" + rules.getDefinitions());
+        synchronized (CACHES) {
+            return CACHES.computeIfAbsent(scope, s -> new SubpositionCache(DEFAULT_CAPACITY));
+        }
+    }
+
+    /**
+     * every cache still kept
+     *
+     * @return the caches by board size, followed by a bar and any piece
+     *          definitions
+     */
+    public static Map<String, SubpositionCache> getCaches() {
+        synchronized (CACHES) {
+            return new TreeMap<>(CACHES);
+        }
+    }
+
+    /**
+     * is a position worth looking up?
+     *
+     * @param board the position
+     * @return true if it has between {@link #MIN_PIECES} and {@link #MAX_PIECES} pieces
+     */
+    public static boolean covers(ChessBoard board) {
+        return board.getPieceCount() >= MIN_PIECES && board.getPieceCount() <= MAX_PIECES;
+    }
+
+    /**
+     * looks up a position
+     *
+     * @param board the position
+     * @return {@link #DEAD}, the encoded capture that solves it, or
+     *          {@link #MISSING}
+     */
+    public int get(ChessBoard board) {
+        long hash = board.hash();
+        int check = (int) board.checkHash();
+        int set = set(hash);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+                if (used[entry] && keys[entry] == hash && checks[entry] == check) {
+                    referenced[entry] = true;
+                    hits.increment();
+                    return values[entry];
+                }
+            }
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * stores what is known about a position. a position whose hash collides
+     * with one already stored replaces it
+     *
+     * @param board the position
+     * @param value {@link #DEAD} or the encoded capture that solves it
+     */
+    public void put(ChessBoard board, int value) {
+        long hash = board.hash();
+        int check = (int) board.checkHash();
+        int set = set(hash);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int first = set * WAYS;
+            int free = -1;
+            for (int entry = first; entry < first + WAYS; entry++) {
+                if (used[entry] && keys[entry] == hash) {
+                    checks[entry] = check;
+                    values[entry] = value;
+                    return;
+                }
+                if (!used[entry] && free < 0) {
+                    free = entry;
+                }
+            }
+            if (free < 0) {
+                // sweep the set, giving used entries a second chance
+                int hand = hands[set];
+                while (referenced[first + hand]) {
+                    referenced[first + hand] = false;
+                    hand = (hand + 1) % WAYS;
+                }
+                free = first + hand;
+                hands[set] = (byte) ((hand + 1) % WAYS);
+                evictions.increment();
+            }
+            keys[free] = hash;
+            checks[free] = check;
+            values[free] = value;
+            used[free] = true;
+            referenced[free] = false;
+            stores.increment();
+        }
+    }
+
+    /**
+     * the set a position lives in
+     *
+     * @param hash the position's hash
+     * @return the set
+     */
+    private int set(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (sets - 1);
+    }
+
+    /** returns the number of positions the cache can hold */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /** returns the lookups that found the position */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** returns the lookups that did not */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** returns the positions stored */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /** returns the positions evicted to make room */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * the metrics on one line
+     *
+     * @return hits, lookups, stores and evictions
+     */
+    @Override
+    public String toString() {
+        long hit = getHits();
+        long lookups = hit + getMisses();
+        return String.format("%d/%d hits (%.1f%%), %d stored, %d evicted", hit, lookups,
+                lookups == 0 ? 0.0 : 100.0 * hit / lookups, getStores(), getEvictions());
+    }
+}
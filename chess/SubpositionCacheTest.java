@@ -0,0 +1,132 @@
+package puzzles.chess.solver;
+
+import puzzles.chess.model.ChessBoard;
+import puzzles.chess.model.PieceRules;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * checks of {@link SubpositionCache}. run it with
+ * {@code java puzzles.chess.solver.SubpositionCacheTest}; the first failed
+ * check throws an {@link AssertionError}.
+ *
+ * @author Kristin Yap
+ */
+public class SubpositionCacheTest {
+    /**
+     * runs every check
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        collidingHashesAreToldApart();
+        storedPositionsAreFound();
+        sharedCachesAreBounded();
+        System.out.println("SubpositionCacheTest: ok");
+    }
+
+    /**
+     * two different positions with the same {@link ChessBoard#hash()} do
+     * not share an entry, so one being dead does not make the other dead
+     */
+    private static void collidingHashesAreToldApart() {
+        ChessBoard[] pair = collision(9, 9, 'N');
+        check(pair[0].hash() == pair[1].hash(), "no collision built");
+        check(!pair[0].encode().equals(pair[1].encode()), "colliding positions are equal");
+        SubpositionCache cache = new SubpositionCache(1 << 10);
+        cache.put(pair[0], SubpositionCache.DEAD);
+        check(cache.get(pair[1]) == SubpositionCache.MISSING, "colliding position reported dead");
+        check(cache.get(pair[0]) == SubpositionCache.DEAD, "stored position lost");
+    }
+
+    /** a position is found again, from another board of the same squares */
+    private static void storedPositionsAreFound() {
+        SubpositionCache cache = new SubpositionCache(1 << 10);
+        ChessBoard board = ChessBoard.fromEncoding("3x3:QR..B....");
+        int move = ChessBoard.encode(0, 1, 'R');
+        cache.put(board, move);
+        check(cache.get(ChessBoard.fromEncoding("3x3:QR..B....")) == move, "stored position not found");
+        check(cache.get(ChessBoard.fromEncoding("3x3:QB..R....")) == SubpositionCache.MISSING, "other position found");
+    }
+
+    /**
+     * puzzles of many board sizes keep no more than
+     * {@link SubpositionCache#MAX_SCOPES} shared caches, the most recent
+     * among them
+     */
+    private static void sharedCachesAreBounded() {
+        SubpositionCache last = null;
+        for (int size = 2; size < 2 + 3 * SubpositionCache.MAX_SCOPES; size++) {
+            last = SubpositionCache.forBoard(size, size, PieceRules.STANDARD);
+            check(SubpositionCache.getCaches().size() <= SubpositionCache.MAX_SCOPES,
+                    "caches kept: " + SubpositionCache.getCaches().keySet());
+        }
+        int size = 1 + 3 * SubpositionCache.MAX_SCOPES;
+        check(SubpositionCache.forBoard(size, size, PieceRules.STANDARD) == last, "most recent cache dropped");
+    }
+
+    /**
+     * builds two positions whose hashes collide. a board hashes to the xor
+     * of {@link ChessBoard#hashOf(int, char)} over its pieces, so more
+     * squares than the hash has bits are linearly dependent: elimination
+     * finds a set of them whose hashes xor to zero, and the pieces on one
+     * half of the set hash the same as the pieces on the other half
+     *
+     * @param rows board rows, with more than 64 squares
+     * @param cols board cols
+     * @param piece the piece put on the squares
+     * @return the two positions
+     */
+    private static ChessBoard[] collision(int rows, int cols, char piece) {
+        int squares = rows * cols;
+        long[] basis = new long[Long.SIZE];
+        BitSet[] made = new BitSet[Long.SIZE];
+        for (int square = 0; square < squares; square++) {
+            long value = ChessBoard.hashOf(square, piece);
+            BitSet from = new BitSet();
+            from.set(square);
+            for (int bit = Long.SIZE - 1; bit >= 0 && value != 0; bit--) {
+                if ((value >>> bit & 1) == 0) {
+                    continue;
+                }
+                if (basis[bit] == 0) {
+                    basis[bit] = value;
+                    made[bit] = from;
+                    value = 0;
+                    from = null;
+                }
+                else {
+                    value ^= basis[bit];
+                    from.xor(made[bit]);
+                }
+            }
+            if (from != null) {
+                // the squares in from xor to zero
+                char[][] cells = new char[2][squares];
+                Arrays.fill(cells[0], ChessBoard.EMPTY);
+                Arrays.fill(cells[1], ChessBoard.EMPTY);
+                int half = 0;
+                for (int s = from.nextSetBit(0); s >= 0; s = from.nextSetBit(s + 1)) {
+                    cells[half++ % 2][s] = piece;
+                }
+                return new ChessBoard[] {
+                        ChessBoard.fromEncoding(rows + "x" + cols + ":" + String.valueOf(cells[0])),
+                        ChessBoard.fromEncoding(rows + "x" + cols + ":" + String.valueOf(cells[1]))};
+            }
+        }
+        throw new IllegalStateException("Squares are independent");
+    }
+
+    /**
+     * fails unless a condition holds
+     *
+     * @param condition the condition
+     * @param message what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package puzzles.chess.solver;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * messages passed between a {@link DistributedSolver} and its
+ * {@link ChessWorker}s. after a worker connects it is sent the number of
+ * workers and the encoded starting board; every later message
+ * starts with one of the type bytes below.
+ *
+ * @author Kristin Yap
+ */
+final class WorkerProtocol {
+    /** a batch of (state, parent) pairs owned by the worker; answered with a layer result */
+    static final byte STATES = 1;
+    /** a state the worker owns; answered with its parent */
+    static final byte PARENT = 2;
+    /** the worker should exit */
+    static final byte QUIT = 3;
+
+    /** not instantiated */
+    private WorkerProtocol() {
+    }
+
+    /**
+     * the worker that owns a state
+     *
+     * @param key the exact key of the state
+     * @param workers the number of workers
+     * @return the owner's id
+     */
+    static int owner(long key, int workers) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (h ^ (h >>> 32)), workers);
+    }
+
+    /** a growable list of (state, parent) key pairs */
+    static final class KeyBatch {
+        /** keys and parents, interleaved */
+        private long[] pairs = new long[64];
+        /** the number of pairs */
+        private int size;
+
+        /**
+         * adds a pair
+         *
+         * @param key the state
+         * @param parent the state it was reached from
+         */
+        void add(long key, long parent) {
+            if (size * 2 == pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[size * 2] = key;
+            pairs[size * 2 + 1] = parent;
+            size++;
+        }
+
+        /** returns the number of pairs */
+        int size() {
+            return size;
+        }
+
+        /** returns the state of a pair */
+        long key(int index) {
+            return pairs[index * 2];
+        }
+
+        /** returns the parent of a pair */
+        long parent(int index) {
+            return pairs[index * 2 + 1];
+        }
+
+        /** removes every pair */
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * writes the pairs, preceded by their count
+         *
+         * @param out the stream
+         * @throws IOException if the stream fails
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size * 2; i++) {
+                out.writeLong(pairs[i]);
+            }
+        }
+
+        /**
+         * appends pairs written by {@link #write(DataOutputStream)}
+         *
+         * @param in the stream
+         * @throws IOException if the stream fails
+         */
+        void read(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                add(key, in.readLong());
+            }
+        }
+    }
+}
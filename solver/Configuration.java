@@ -1,10 +1,44 @@
 package puzzles.common.solver;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
-public interface Configuration {
+public interface Configuration extends Successor {
     boolean isSolution();
     Collection<Configuration> getNeighbors();
+
+    /**
+     * visits each neighbor as a successor that is only built on request.
+     * implementations may reuse one successor object for every neighbor, so
+     * visitors must materialize a successor to keep it.
+     *
+     * @param visitor receives each successor
+     */
+    default void forEachNeighbor(Consumer<? super Successor> visitor) {
+        getNeighbors().forEach(visitor);
+    }
+
+    /** returns the rows of the puzzle's board, 0 for a puzzle without one */
+    default int getRows() {
+        return 0;
+    }
+
+    /** returns the cols of the puzzle's board, 0 for a puzzle without one */
+    default int getCols() {
+        return 0;
+    }
+
+    /** returns the pieces left, 0 for a puzzle without pieces */
+    default int getPieceCount() {
+        return 0;
+    }
+
+    /** a configuration is already built */
+    @Override
+    default Configuration materialize() {
+        return this;
+    }
+
     boolean equals(Object other);
     int hashCode();
     String toString();
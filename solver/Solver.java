@@ -9,11 +9,29 @@ import java.util.*;
  * @author Kristin Yap
  */
 public class Solver {
-    /** the total number of configs */
-    private static int totalConfigs;
-    /** the total number of unique configs */
-    private static int uniqueConfigs;
-    private static Configuration solution;
+    /** the name of this engine in flight recorder events */
+    private static final String ENGINE = "breadth first";
+
+    /**
+     * the counts and solution of the last search on each thread, so
+     * searches running on other threads at the same time do not mix them up
+     */
+    private static final ThreadLocal<Search> LAST = ThreadLocal.withInitial(Search::new);
+
+    /** the state of one search */
+    private static final class Search {
+        /** the total number of configs */
+        private int totalConfigs;
+        /** the total number of unique configs */
+        private int uniqueConfigs;
+        /** the solution found, or null */
+        private Configuration solution;
+        /** nanoseconds spent checking neighbors against the configs already seen */
+        private long dedupNanos;
+        /** was the search given up because it kept too many configs? */
+        private boolean abandoned;
+    }
+
     /**
      * finds the shortest path to the solution
      *
@@ -21,32 +39,79 @@ public class Solver {
      * @return the sequence from start to end configs
      */
     public static Collection<Configuration> getShortestPath(Configuration start){
+        return getShortestPath(start, Integer.MAX_VALUE);
+    }
+
+    /**
+     * finds the shortest path to the solution, giving up once more configs
+     * have been seen than the caller has memory for. the caller estimates
+     * the limit from the heap and the size of its configs; a search given
+     * up returns no path and {@link #wasAbandoned()} tells it apart from a
+     * puzzle with no solution
+     *
+     * @param start the starting config
+     * @param maxConfigs the most unique configs to keep
+     * @return the sequence from start to end configs, or an empty list if
+     *          there is none or the search was given up
+     */
+    public static Collection<Configuration> getShortestPath(Configuration start, int maxConfigs){
         Configuration startPoint = start;
-        totalConfigs = 0;
-        uniqueConfigs = 0;
+        Search search = new Search();
+        LAST.set(search);
         List<Configuration> queue = new LinkedList<>();
         queue.add(startPoint);
         Map<Configuration, Configuration> predecessors = new HashMap<>();
         predecessors.put(startPoint, startPoint);
+        // phases are only timed while a flight recording wants them
+        boolean timed = new SolverPhaseEvent().isEnabled();
+        long expandNanos = 0;
+        long expanded = 0;
         while (!queue.isEmpty()) {
             // the next node to process is at the front of the queue
             Configuration current = queue.remove(0);
             if (current.isSolution()) {
-                solution = current;
+                search.solution = current;
                 break;
             }
-            // loop over all neighbors of current
-            for (Configuration neighbor : current.getNeighbors()) {
-                // process unvisited neighbors
-                if(!predecessors.containsKey(neighbor)) {
+            // loop over all neighbors of current, only building the unvisited ones
+            long expandStart = timed ? System.nanoTime() : 0;
+            current.forEachNeighbor(successor -> {
+                search.totalConfigs++;
+                long dedupStart = timed ? System.nanoTime() : 0;
+                if(!predecessors.containsKey(successor)) {
+                    Configuration neighbor = successor.materialize();
                     predecessors.put(neighbor, current);
                     queue.add(neighbor);
                 }
+                if(timed) {
+                    search.dedupNanos += System.nanoTime() - dedupStart;
+                }
+            });
+            if(timed) {
+                expandNanos += System.nanoTime() - expandStart;
+            }
+            expanded++;
+            search.uniqueConfigs = predecessors.size();
+            if (search.uniqueConfigs > maxConfigs) {
+                search.abandoned = true;
+                break;
             }
-            totalConfigs += current.getNeighbors().size();
-            uniqueConfigs = predecessors.size();
         }
-        return constructPath(predecessors, startPoint, solution);
+        long pathStart = timed ? System.nanoTime() : 0;
+        List<Configuration> path = constructPath(predecessors, startPoint, search.solution);
+        if(timed) {
+            long pathNanos = System.nanoTime() - pathStart;
+            int total = search.totalConfigs;
+            int unique = search.uniqueConfigs;
+            int rows = start.getRows();
+            int cols = start.getCols();
+            int pieces = start.getPieceCount();
+            SolverPhaseEvent.commit(ENGINE, "expand", expandNanos - search.dedupNanos, expanded, total, unique,
+                    rows, cols, pieces);
+            SolverPhaseEvent.commit(ENGINE, "dedup", search.dedupNanos, expanded, total, unique, rows, cols, pieces);
+            SolverPhaseEvent.commit(ENGINE, "path", pathNanos, expanded, total, unique, rows, cols, pieces);
+        }
+        return path;
     }
 
     /**
@@ -60,36 +125,46 @@ public class Solver {
      */
     private static List<Configuration> constructPath(Map<Configuration, Configuration> predecessors,
                                                      Configuration startPoint, Configuration endPoint){
-        List<Configuration> path = new LinkedList<>();
+        List<Configuration> path = new ArrayList<>();
         if(predecessors.containsKey(endPoint)) {
             Configuration currConfig = endPoint;
             while (currConfig != startPoint) {
-                path.add(0, currConfig);
+                path.add(currConfig);
                 currConfig = predecessors.get(currConfig);
             }
-            path.add(0, startPoint);
+            path.add(startPoint);
+            Collections.reverse(path);
         }
         return path;
     }
 
+    /**
+     * was the last search on this thread given up for want of memory?
+     *
+     * @return true if it stopped before finding a solution or running out of configs
+     */
+    public static boolean wasAbandoned(){
+        return LAST.get().abandoned;
+    }
+
     public static Configuration getSolution(){
-        return solution;
+        return LAST.get().solution;
     }
     /**
-     * returns the total number of configs
+     * returns the total number of configs of the last search on this thread
      *
      * @return total configs
      */
     public static int getTotalConfigs(){
-        return totalConfigs;
+        return LAST.get().totalConfigs;
     }
 
     /**
-     * returns the number of unique configs
+     * returns the number of unique configs of the last search on this thread
      *
      * @return unique configs
      */
     public static int getUniqueConfigs(){
-        return uniqueConfigs;
+        return LAST.get().uniqueConfigs;
     }
 }
@@ -0,0 +1,85 @@
+package puzzles.common.solver;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * a flight recorder event for the time one solve spent in a phase of an
+ * engine. the {@link Solver} reports "expand" generating neighbors, "dedup"
+ * checking them against the configs already seen, and "path" building the
+ * result; expanding and deduplicating alternate for every config, so their
+ * time is added up over the solve and reported once at the end. the chess
+ * engines report their whole search as one "search" phase under their own
+ * name
+ *
+ * @author Kristin Yap
+ */
+@Name("puzzles.SolverPhase")
+@Label("Solver Phase")
+@Category({"Puzzles", "Solver"})
+@Description("Time a solve spent in one phase")
+@StackTrace(false)
+public class SolverPhaseEvent extends Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Expanded Configs")
+    long expanded;
+
+    @Label("Total Configs")
+    long totalConfigs;
+
+    @Label("Unique Configs")
+    long uniqueConfigs;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Cols")
+    int cols;
+
+    @Label("Pieces")
+    int pieces;
+
+    /**
+     * records a phase if the event is turned on
+     *
+     * @param engine the engine that solved
+     * @param phase the phase
+     * @param time nanoseconds spent in it
+     * @param expanded configs whose neighbors were generated
+     * @param totalConfigs neighbors generated
+     * @param uniqueConfigs distinct configs seen
+     * @param rows board rows, 0 for a puzzle without a board
+     * @param cols board cols, 0 for a puzzle without a board
+     * @param pieces pieces at the start, 0 for a puzzle without pieces
+     */
+    public static void commit(String engine, String phase, long time, long expanded, long totalConfigs,
+                              long uniqueConfigs, int rows, int cols, int pieces) {
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.phase = phase;
+            event.time = time;
+            event.expanded = expanded;
+            event.totalConfigs = totalConfigs;
+            event.uniqueConfigs = uniqueConfigs;
+            event.rows = rows;
+            event.cols = cols;
+            event.pieces = pieces;
+            event.commit();
+        }
+    }
+}
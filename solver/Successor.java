@@ -0,0 +1,17 @@
+package puzzles.common.solver;
+
+/**
+ * a neighbor of a configuration that may not have been built yet. a
+ * successor must hash and compare equal to the configuration it describes,
+ * so a solver can check whether it has been visited before paying to build it.
+ *
+ * @author Kristin Yap
+ */
+public interface Successor {
+    /**
+     * builds the configuration this successor describes
+     *
+     * @return the configuration
+     */
+    Configuration materialize();
+}
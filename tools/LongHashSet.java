@@ -0,0 +1,134 @@
+package puzzles.common;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash set of primitive longs. Keys are stored in a
+ * flat array with linear probing, so adding and looking up keys does not
+ * allocate (apart from the occasional resize) and nothing is boxed.
+ *
+ * @author Kristin Yap
+ */
+public class LongHashSet {
+    /** the smallest table that will be allocated */
+    private static final int MIN_CAPACITY = 16;
+    /** zero marks a free slot, so the key zero is tracked separately */
+    private static final long FREE = 0L;
+
+    /** the table of keys */
+    private long[] keys;
+    /** mask used to wrap an index around the table */
+    private int mask;
+    /** number of keys stored in the table */
+    private int size;
+    /** is the key zero in the set? */
+    private boolean hasZero;
+
+    /** creates an empty set */
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * creates an empty set that can hold the expected number of keys
+     * without growing
+     *
+     * @param expected expected number of keys
+     */
+    public LongHashSet(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * adds a key to the set
+     *
+     * @param key the key
+     * @return true if the key was not already in the set
+     */
+    public boolean add(long key) {
+        if (key == FREE) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            return true;
+        }
+        int index = index(key);
+        while (keys[index] != FREE) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * is the key in the set?
+     *
+     * @param key the key
+     * @return true if the key has been added
+     */
+    public boolean contains(long key) {
+        if (key == FREE) {
+            return hasZero;
+        }
+        int index = index(key);
+        while (keys[index] != FREE) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /** returns the number of keys in the set */
+    public int size() {
+        return hasZero ? size + 1 : size;
+    }
+
+    /** removes every key, keeping the table allocated */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasZero = false;
+    }
+
+    /** doubles the table and re-inserts every key */
+    private void grow() {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        mask = keys.length - 1;
+        for (long key : old) {
+            if (key != FREE) {
+                int index = index(key);
+                while (keys[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+
+    /**
+     * spreads the bits of a key and maps it onto the table
+     *
+     * @param key the key
+     * @return the starting index for the key
+     */
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,150 @@
+package puzzles.common;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive longs to primitive longs,
+ * stored in two flat arrays with linear probing so entries cost sixteen
+ * bytes plus free space instead of two boxed objects and a map node.
+ *
+ * @author Kristin Yap
+ */
+public class LongLongHashMap {
+    /** the smallest table that will be allocated */
+    private static final int MIN_CAPACITY = 16;
+    /** zero marks a free slot, so the key zero is tracked separately */
+    private static final long FREE = 0L;
+
+    /** the table of keys */
+    private long[] keys;
+    /** the value of each key */
+    private long[] values;
+    /** mask used to wrap an index around the table */
+    private int mask;
+    /** number of keys stored in the table */
+    private int size;
+    /** is the key zero in the map? */
+    private boolean hasZero;
+    /** the value of the key zero */
+    private long zeroValue;
+
+    /** creates an empty map */
+    public LongLongHashMap() {
+        keys = new long[MIN_CAPACITY];
+        values = new long[MIN_CAPACITY];
+        mask = MIN_CAPACITY - 1;
+    }
+
+    /**
+     * adds a key if it is not in the map yet
+     *
+     * @param key the key
+     * @param value the value for the key
+     * @return true if the key was added, false if it was already present
+     */
+    public boolean putIfAbsent(long key, long value) {
+        if (key == FREE) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            zeroValue = value;
+            return true;
+        }
+        int index = index(key);
+        while (keys[index] != FREE) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * is the key in the map?
+     *
+     * @param key the key
+     * @return true if the key has been added
+     */
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasZero;
+        }
+        return keys[find(key)] == key;
+    }
+
+    /**
+     * gets the value of a key
+     *
+     * @param key the key
+     * @param missing value to return if the key is not in the map
+     * @return the value of the key, or missing
+     */
+    public long get(long key, long missing) {
+        if (key == FREE) {
+            return hasZero ? zeroValue : missing;
+        }
+        int index = find(key);
+        return keys[index] == key ? values[index] : missing;
+    }
+
+    /** returns the number of keys in the map */
+    public int size() {
+        return hasZero ? size + 1 : size;
+    }
+
+    /** removes every entry, keeping the tables allocated */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * finds the slot holding a key, or the free slot where it would go
+     *
+     * @param key a key other than zero
+     * @return the slot index
+     */
+    private int find(long key) {
+        int index = index(key);
+        while (keys[index] != FREE && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /** doubles the table and re-inserts every entry */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int index = find(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * spreads the bits of a key and maps it onto the table
+     *
+     * @param key the key
+     * @return the starting index for the key
+     */
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,160 @@
+package puzzles.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock-free set of 64-bit keys that can be shared by many
+ * threads. A key is looked for in a short run of slots starting at its hash;
+ * when every slot in the run is taken, a new key replaces the one in its
+ * first slot. The table never grows, so old keys may be forgotten, but a key
+ * that was never added is never reported as present. The key zero is never
+ * stored. When keys are hashes, a table made with check hashes stores a
+ * second hash with each key and only finds a key whose check hash matches
+ * too; the check hash is written before its key, so a reader racing a
+ * writer sees a mismatch and misses rather than taking one entry for
+ * another.
+ *
+ * @author Kristin Yap
+ */
+public class TranspositionTable {
+    /** slots probed for each key */
+    private static final int PROBES = 4;
+    /** marks a free slot */
+    private static final long FREE = 0L;
+
+    /** the slots */
+    private final AtomicLongArray slots;
+    /** the check hash of the key in each slot, or null if keys are not checked */
+    private final AtomicLongArray checks;
+    /** mask used to wrap an index around the table */
+    private final int mask;
+
+    /**
+     * creates a table
+     *
+     * @param capacity the number of keys the table can hold, rounded up to
+     *                 a power of two
+     */
+    public TranspositionTable(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * creates a table
+     *
+     * @param capacity the number of keys the table can hold, rounded up to
+     *                 a power of two
+     * @param checked should each key be stored with a check hash?
+     */
+    public TranspositionTable(int capacity, boolean checked) {
+        int size = Integer.highestOneBit(Math.max(PROBES, capacity - 1) << 1);
+        slots = new AtomicLongArray(size);
+        checks = checked ? new AtomicLongArray(size) : null;
+        mask = size - 1;
+    }
+
+    /**
+     * adds a key, replacing an older key if its slots are all taken
+     *
+     * @param key the key
+     * @return true if the key was not in the table already
+     */
+    public boolean add(long key) {
+        return add(key, 0L);
+    }
+
+    /**
+     * adds a key with its check hash, replacing an older key if its slots
+     * are all taken
+     *
+     * @param key the key
+     * @param check the check hash, ignored if keys are not checked
+     * @return true if the key was not in the table already
+     */
+    public boolean add(long key, long check) {
+        if (key == FREE) {
+            return false;
+        }
+        int start = index(key);
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            long current = slots.get(index);
+            if (current == key) {
+                return false;
+            }
+            if (current == FREE) {
+                setCheck(index, check);
+                if (slots.compareAndSet(index, FREE, key)) {
+                    return true;
+                }
+            }
+        }
+        setCheck(start, check);
+        slots.set(start, key);
+        return true;
+    }
+
+    /**
+     * is the key in the table?
+     *
+     * @param key the key
+     * @return true if the key was added and has not been replaced
+     */
+    public boolean contains(long key) {
+        return contains(key, 0L);
+    }
+
+    /**
+     * is the key in the table with this check hash?
+     *
+     * @param key the key
+     * @param check the check hash, ignored if keys are not checked
+     * @return true if the key was added with the check hash and has not
+     *          been replaced
+     */
+    public boolean contains(long key, long check) {
+        if (key == FREE) {
+            return false;
+        }
+        int start = index(key);
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            long current = slots.get(index);
+            if (current == key) {
+                return checks == null || checks.get(index) == check;
+            }
+            if (current == FREE) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * stores a check hash ahead of its key
+     *
+     * @param index the slot
+     * @param check the check hash
+     */
+    private void setCheck(int index, long check) {
+        if (checks != null) {
+            checks.set(index, check);
+        }
+    }
+
+    /** returns the number of keys the table can hold */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * spreads the bits of a key and maps it onto the table
+     *
+     * @param key the key
+     * @return the first slot for the key
+     */
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}